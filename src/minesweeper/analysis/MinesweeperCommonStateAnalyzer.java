@@ -2,9 +2,14 @@ package minesweeper.analysis;
 
 import minesweeper.analysis.gamestate.GameStateFuzzy;
 import minesweeper.analysis.gamestate.GameStateResult;
+import minesweeper.analysis.gamestate.MappedStateTable;
+import minesweeper.analysis.gamestate.StateRecord;
+import minesweeper.analysis.gamestate.StateRunSorter;
 import minesweeper.bulk.ExtendedBulk;
 import minesweeper.bulk.ExtendedConsumer;
 import minesweeper.bulk.ExtendedRequest;
+import minesweeper.bulk.GameSample;
+import minesweeper.bulk.TrajectoryEntry;
 import minesweeper.gamestate.GameStateModel;
 import minesweeper.settings.GameSettings;
 import minesweeper.settings.GameType;
@@ -12,104 +17,187 @@ import minesweeper.solver.Solver;
 import minesweeper.solver.settings.SettingsFactory;
 import minesweeper.solver.settings.SolverSettings;
 import minesweeper.structure.Action;
-import minesweeper.structure.Location;
+import minesweeper.util.BoardGeometry;
+import minesweeper.util.BoardSnapshot;
 import minesweeper.util.CommandLineUtil;
+import minesweeper.util.HeavyHitters;
+import minesweeper.util.ZobristHash;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
+import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Collections;
 import java.util.Random;
 
 
 public class MinesweeperCommonStateAnalyzer {
     private static class CommonStateAnalysisResult extends ExtendedConsumer {
-        Map<GameStateFuzzy, GameStateResult> frequencyMap = new HashMap<>();
-        Map<Long, List<GameStateFuzzy>> states;
-        Map<Long, List<Location>> fuzzyStateActions;
+        // the most frequent states, keyed by the zobrist key of the state which is the same for all its symmetries.
+        // Any state seen more than 1 in capacity times is certain to be here, whenever in the run it turns up
+        final HeavyHitters<Long, GameStateResult> frequentStates;
         int games = 0;
         final int gamesMax;
         final int target;
         final double sigma;
 
-        CommonStateAnalysisResult(int gamesMax, int target, double sigma, int workers) {
+        // exact counts of the first few guesses of every game, kept on disk
+        MappedStateTable exactTable;
+        int exactGuesses;
+
+        // how many of the games reaching each tracked state to keep, to be played again with MinesweeperStateReplay
+        int sampleSize;
+        Random sampleRandom;
+
+        // where to write the counts as a state run, to be merged with other runs
+        File runFile;
+        GameSettings gameSettings;
+
+        CommonStateAnalysisResult(int gamesMax, int target, double sigma, int capacity) {
             this.gamesMax = gamesMax;
             this.target = target;
             this.sigma = sigma;
-
-            states = new HashMap<>();
-            fuzzyStateActions = new HashMap<>();
+            this.frequentStates = new HeavyHitters<>(capacity);
         }
 
         @Override
         public void processRequest(ExtendedRequest request) {
             int state = request.gs.getGameState();
-            long seed = request.gs.getSeed();
-            List<GameStateFuzzy> coreStates = states.get(seed);
-            List<Location> coreActions = fuzzyStateActions.get(seed);
-            if (coreStates == null && coreActions == null) {
-                games++;
-                return;
-            }
-
-            for (int i = 0; i < coreStates.size(); i++) {
-                GameStateFuzzy fuzzyState = coreStates.get(i);
-                Location location = coreActions.get(i);
 
-                if (!frequencyMap.containsKey(fuzzyState) && games < gamesMax / target * 10) {
-                    frequencyMap.put(fuzzyState, new GameStateResult(fuzzyState));
-                }
-                if (frequencyMap.containsKey(fuzzyState)) {
-                    frequencyMap.get(fuzzyState).addLocation(fuzzyState, location);
-                    if (state == GameStateModel.LOST) {
-                        frequencyMap.get(fuzzyState).addLose();
-                    }
-                    else {
-                        frequencyMap.get(fuzzyState).addWin();
+            for (TrajectoryEntry entry : request.trajectory) {
+                GameStateResult result = frequentStates.offer(entry.key, key -> {
+                    GameStateResult admitted = new GameStateResult(new GameStateFuzzy(entry.snapshot, request.gs.getMines()), entry.keySymmetry);
+                    if (sampleSize > 0) {
+                        admitted.keepSamples(sampleSize);
                     }
+                    return admitted;
+                });
+                result.addLocation(entry.keySymmetry, entry.action);
+                result.addSample(new GameSample(request.gs.getSeed(), entry.move), sampleRandom);
+                if (state == GameStateModel.LOST) {
+                    result.addLose();
+                }
+                else {
+                    result.addWin();
                 }
             }
 
-            states.remove(seed);
-            fuzzyStateActions.remove(seed);
+            request.trajectory.clear();
+            request.stateHash = null;
             games++;
         }
 
         @Override
-        public void processAction(GameStateModel model, Action action, BigDecimal probability, int number) {
+        public void processAction(ExtendedRequest request, Action action, BigDecimal probability, int number) {
+            GameStateModel model = request.gs;
+
+            // every move has to be followed to keep the hash up to date, but it only looks at what the move revealed
+            if (request.stateHash == null) {
+                request.stateHash = new ZobristHash(BoardGeometry.of(model.getWidth(), model.getHeight()));
+            }
+            ZobristHash hash = request.stateHash;
+            hash.update(model, Collections.singletonList(action));
+
             if (!action.isCertainty()) {
-                long seed = model.getSeed();
-                if (!states.containsKey(seed)) {
-                    states.put(seed, new ArrayList<>());
-                    fuzzyStateActions.put(seed, new ArrayList<>());
+                // the board is always copied, the state can be dropped from the counts before the game ends and then
+                // need it to be admitted again. Skipping it instead would undercount the state past the error bound
+                BoardSnapshot snapshot = new BoardSnapshot(model);
+                request.trajectory.add(new TrajectoryEntry(hash.getKey(), hash.getKeySymmetry(), action, snapshot, request.moves));
+            }
+
+            // the exact table takes updates from all the workers, so add the game from here once the result is known
+            int state = model.getGameState();
+            if (exactTable != null && (state == GameStateModel.WON || state == GameStateModel.LOST)) {
+                try {
+                    for (int i = 0; i < request.trajectory.size() && i < exactGuesses; i++) {
+                        TrajectoryEntry entry = request.trajectory.get(i);
+                        exactTable.add(new GameStateFuzzy(entry.snapshot, model.getMines()), entry.action, state == GameStateModel.WON);
+                    }
+                    exactTable.addGame();
+                } catch (IOException e) {
+                    e.printStackTrace();
                 }
-                states.get(seed).add(new GameStateFuzzy(model));
-                fuzzyStateActions.get(seed).add(action);
             }
         }
 
         @Override
         public String print() {
             StringBuilder builder = new StringBuilder();
-            List<GameStateResult> frequentStates = new ArrayList<>(frequencyMap.values());
-            frequentStates.sort(new GameStateResult.FrequencyComparator());
 
             double mean = 1.0 * gamesMax / target;
             double stdev = Math.sqrt(mean * (1 - 1.0 / target));
             double limit = mean - sigma * stdev;
 
-            for (GameStateResult state : frequentStates) {
-                if (state.appeared < limit) break;
-                builder.append(state);
+            // the won and lost counts of a state only start when it was last given a counter
+            for (HeavyHitters.Entry<Long, GameStateResult> entry : frequentStates.getEntries()) {
+                if (entry.getCount() < limit) break;
+                builder.append(entry.getValue().toString(games));
+                builder.append("Seen ");
+                builder.append(entry.getCount());
+                builder.append(" times, at least ");
+                builder.append(entry.getGuaranteed());
+                builder.append("\n\n");
+            }
+            builder.append("Tracked ");
+            builder.append(frequentStates.getCapacity());
+            builder.append(" states over ");
+            builder.append(frequentStates.getTotal());
+            builder.append(" guesses, counts are at most ");
+            builder.append(frequentStates.getMaxError());
+            builder.append(" over\n");
+
+            if (exactTable != null) {
+                exactTable.flush();
+                builder.append("Exact counts for ");
+                builder.append(exactTable.size());
+                builder.append(" states in ");
+                builder.append(exactTable.getDirectory());
+                builder.append("\n");
+            }
+
+            if (runFile != null) {
+                try {
+                    writeRun();
+                    builder.append("State run written to ");
+                    builder.append(runFile);
+                    builder.append("\n");
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
             return builder.toString();
         }
+
+        // the exact counts if we have them, otherwise the counts of the states being tracked since they were last admitted
+        private void writeRun() throws IOException {
+            // the exact table also has the games still being played when the run ended, and any from earlier runs into it
+            long total = (exactTable != null) ? exactTable.getGames() : games;
+            try (StateRunSorter sorter = new StateRunSorter(runFile, gameSettings.width, gameSettings.height, gameSettings.mines, total)) {
+                if (exactTable != null) {
+                    IOException[] failed = new IOException[1];
+                    exactTable.forEach(counts -> {
+                        try {
+                            if (failed[0] == null) {
+                                sorter.add(StateRecord.of(counts));
+                            }
+                        } catch (IOException e) {
+                            failed[0] = e;
+                        }
+                    });
+                    if (failed[0] != null) {
+                        throw failed[0];
+                    }
+                } else {
+                    for (HeavyHitters.Entry<Long, GameStateResult> entry : frequentStates.getEntries()) {
+                        sorter.add(StateRecord.of(entry.getValue()));
+                    }
+                }
+            }
+        }
     }
 
     /**
@@ -126,6 +214,11 @@ public class MinesweeperCommonStateAnalyzer {
         options.addOption("sigma", true, "Standard deviation, default is 4.");
         options.addOption("seed", true, "RNG seed. If not provided, default seed is used.");
         options.addOption("core", true, "Number of cores to use. Default is 1.");
+        options.addOption("capacity", true, "Number of states to keep counts for. Default is 10 * target.");
+        options.addOption("exact", true, "Directory to keep exact counts of every state in. Carries on from any counts already there.");
+        options.addOption("exactGuesses", true, "Number of guesses at the start of each game to count exactly. Default is 3.");
+        options.addOption("samples", true, "Number of games to keep for each tracked state, to replay with MinesweeperStateReplay. Default is 0.");
+        options.addOption("runs", true, "File to write the state counts to as a sorted run, see MinesweeperStateRunMerger.");
 
         CommandLine cmdline;
         try {
@@ -157,13 +250,41 @@ public class MinesweeperCommonStateAnalyzer {
         if (cmdline.hasOption("core")) {
             workers = Integer.parseInt(cmdline.getOptionValue("core"));
         }
+        // every state seen more than 1 in capacity guesses is counted, so this has to comfortably cover 1 in target
+        int capacity = 10 * target;
+        if (cmdline.hasOption("capacity")) {
+            capacity = Integer.parseInt(cmdline.getOptionValue("capacity"));
+        }
 
         ExtendedBulk bulk = new ExtendedBulk(gameGenerator, (ExtendedConsumer consumer) -> {
             assert consumer instanceof CommonStateAnalysisResult;
             CommonStateAnalysisResult analysisResult = (CommonStateAnalysisResult) consumer;
             return (analysisResult.games >= gamesMax);
         }, gameType, gameSettings, (GameStateModel model) -> new Solver(model, preferences, false), workers);
-        bulk.registerConsumer(new CommonStateAnalysisResult(gamesMax, target, sigma, workers));
+        bulk.setQuiet(true);
+        CommonStateAnalysisResult analysisResult = new CommonStateAnalysisResult(gamesMax, target, sigma, capacity);
+        if (cmdline.hasOption("exact")) {
+            try {
+                analysisResult.exactTable = new MappedStateTable(new File(cmdline.getOptionValue("exact")),
+                        gameSettings.width, gameSettings.height, gameSettings.mines);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            analysisResult.exactGuesses = 3;
+            if (cmdline.hasOption("exactGuesses")) {
+                analysisResult.exactGuesses = Integer.parseInt(cmdline.getOptionValue("exactGuesses"));
+            }
+        }
+        if (cmdline.hasOption("samples")) {
+            analysisResult.sampleSize = Integer.parseInt(cmdline.getOptionValue("samples"));
+            analysisResult.sampleRandom = new Random(gameGenerator);
+        }
+        if (cmdline.hasOption("runs")) {
+            analysisResult.runFile = new File(cmdline.getOptionValue("runs"));
+            analysisResult.gameSettings = gameSettings;
+        }
+        bulk.registerConsumer(analysisResult);
         bulk.run();
     }
 }
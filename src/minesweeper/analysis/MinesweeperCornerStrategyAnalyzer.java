@@ -51,7 +51,7 @@ public class MinesweeperCornerStrategyAnalyzer {
         }
 
         @Override
-        public void processAction(GameStateModel model, Action action, BigDecimal probability, int number) {
+        public void processAction(ExtendedRequest request, Action action, BigDecimal probability, int number) {
         }
 
         @Override
@@ -118,6 +118,7 @@ public class MinesweeperCornerStrategyAnalyzer {
                 map((Location location) -> (new Action(location, Action.CLEAR)))
                 .collect(Collectors.toList())
         );
+        bulk.setQuiet(true);
         bulk.registerConsumer(new CornerStrategyAnalysisResult(workers));
         bulk.run();
     }
@@ -0,0 +1,316 @@
+package minesweeper.analysis;
+
+import minesweeper.analysis.gamestate.GameStateFuzzy;
+import minesweeper.analysis.gamestate.OpeningTable;
+import minesweeper.analysis.gamestate.StateRecord;
+import minesweeper.analysis.gamestate.StateRunReader;
+import minesweeper.analysis.gamestate.StateSampler;
+import minesweeper.bulk.ExtendedConsumer;
+import minesweeper.bulk.ExtendedRequest;
+import minesweeper.bulk.SampledBulk;
+import minesweeper.gamestate.GameStateModel;
+import minesweeper.solver.Solver;
+import minesweeper.solver.settings.SettingsFactory;
+import minesweeper.solver.settings.SolverSettings;
+import minesweeper.structure.Action;
+import minesweeper.structure.Location;
+import minesweeper.util.BoardGeometry;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Finds the best tile to clear in each of the common states from a state run (see
+ * {@link MinesweeperCommonStateAnalyzer}), and writes them as an opening table (see {@link OpeningTable}).
+ *
+ * Every hidden tile of a state is a candidate, tiles the state's own symmetries take to each other counting once.
+ * The candidates are raced: each round plays a batch of games from the state for every candidate still in the race,
+ * starting from layouts drawn by a {@link StateSampler} with all the candidates playing the same layouts, then drops
+ * the candidates whose win rate is clearly below the best. The batches double each round, and the race stops when
+ * one candidate is left or the games per candidate reach the limit.
+ */
+public class MinesweeperOpeningSearch {
+
+    private static class Candidate {
+        final Location click;
+        int games = 0;
+        int won = 0;
+
+        Candidate(Location click) {
+            this.click = click;
+        }
+
+        double getWinRate() {
+            return games == 0 ? 0 : 1.0 * won / games;
+        }
+
+        // the Wilson score interval, which stays sensible for win rates near 0 and 1
+        double getLower(double z) {
+            return getCentre(z) - getHalfWidth(z);
+        }
+
+        double getUpper(double z) {
+            return getCentre(z) + getHalfWidth(z);
+        }
+
+        private double getCentre(double z) {
+            return (getWinRate() + z * z / (2.0 * games)) / (1 + z * z / games);
+        }
+
+        private double getHalfWidth(double z) {
+            double p = getWinRate();
+            return z * Math.sqrt(p * (1 - p) / games + z * z / (4.0 * games * games)) / (1 + z * z / games);
+        }
+    }
+
+    // one round of the race, a batch of games for each candidate
+    private static class RaceRound extends ExtendedConsumer {
+        final StateSampler sampler;
+        final List<Candidate> candidates;
+        final int total;
+        int games = 0;
+
+        // only used from the bulk's synchronised methods, so one thread at a time
+        private final Map<GameStateModel, Candidate> playing = new IdentityHashMap<>();
+        private List<Location> layout;
+        private int dispatched = 0;
+
+        RaceRound(StateSampler sampler, List<Candidate> candidates, int batch, int cores) {
+            this.sampler = sampler;
+            this.candidates = candidates;
+            this.total = batch * candidates.size();
+            this.cores = cores;
+        }
+
+        // each layout is played once by every candidate in turn, so they are compared on the same boards
+        GameStateModel nextGame(Random random) {
+            int turn = dispatched % candidates.size();
+            if (turn == 0) {
+                layout = sampler.sampleMines(random);
+            }
+            dispatched++;
+
+            Candidate candidate = candidates.get(turn);
+            GameStateModel game = sampler.create(layout);
+            game.doAction(new Action(candidate.click, Action.CLEAR));
+            playing.put(game, candidate);
+            return game;
+        }
+
+        @Override
+        public void processRequest(ExtendedRequest request) {
+            Candidate candidate = playing.remove(request.gs);
+
+            // games are processed in the order they were dispatched, so once the batch is in the rest were dispatched
+            // while it finished, counting them would give some candidates more games and layouts the others never played
+            if (games >= total) {
+                return;
+            }
+            candidate.games++;
+            if (request.gs.getGameState() == GameStateModel.WON) {
+                candidate.won++;
+            }
+            games++;
+        }
+
+        @Override
+        public void processAction(ExtendedRequest request, Action action, BigDecimal probability, int number) {
+        }
+
+        @Override
+        public String print() {
+            return games + " games played for " + candidates.size() + " candidates";
+        }
+    }
+
+    /**
+     * Example args: -runs all.run -target 1000 -out opening.txt -core 8
+     * @param args
+     */
+    public static void main(String[] args) {
+        CommandLineParser parser = new DefaultParser();
+        Options options = new Options();
+        options.addOption("runs", true, "State run to take the common states from, see MinesweeperStateRunMerger.");
+        options.addOption("target", true, "Search all game states with 1 in target or more chance.");
+        options.addOption("sigma", true, "Standard deviation for picking the states, default is 4.");
+        options.addOption("top", true, "Search at most this many of the most common states. Default is all of them.");
+        options.addOption("games", true, "Games for each candidate in the first round. Default is 100.");
+        options.addOption("gamesMax", true, "Most games for each candidate before the race is stopped. Default is 10000.");
+        options.addOption("z", true, "Standard deviations a candidate has to be behind the best to be dropped. Default is 3.");
+        options.addOption("out", true, "File to write the opening table to.");
+        options.addOption("seed", true, "RNG seed. If not provided, default seed is used.");
+        options.addOption("core", true, "Number of cores to use. Default is 1.");
+
+        CommandLine cmdline;
+        try {
+            cmdline = parser.parse(options, args);
+        } catch (ParseException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        int target = Integer.parseInt(cmdline.getOptionValue("target"));
+        double sigma = 4.0;
+        if (cmdline.hasOption("sigma")) {
+            sigma = Double.parseDouble(cmdline.getOptionValue("sigma"));
+        }
+        int firstBatch = 100;
+        if (cmdline.hasOption("games")) {
+            firstBatch = Integer.parseInt(cmdline.getOptionValue("games"));
+        }
+        int gamesMax = 10000;
+        if (cmdline.hasOption("gamesMax")) {
+            gamesMax = Integer.parseInt(cmdline.getOptionValue("gamesMax"));
+        }
+        final double z = cmdline.hasOption("z") ? Double.parseDouble(cmdline.getOptionValue("z")) : 3.0;
+        long gameGenerator = new Random().nextLong();
+        if (cmdline.hasOption("seed")) {
+            gameGenerator = Long.parseLong(cmdline.getOptionValue("seed"));
+        }
+        int workers = 1;
+        if (cmdline.hasOption("core")) {
+            workers = Integer.parseInt(cmdline.getOptionValue("core"));
+        }
+        File out = new File(cmdline.getOptionValue("out"));
+
+        List<GameStateFuzzy> states = new ArrayList<>();
+        try (StateRunReader reader = new StateRunReader(new File(cmdline.getOptionValue("runs")))) {
+            List<StateRecord> frequent = MinesweeperStateRunMerger.frequentStates(reader, target, sigma);
+            if (cmdline.hasOption("top")) {
+                frequent = frequent.subList(0, Math.min(frequent.size(), Integer.parseInt(cmdline.getOptionValue("top"))));
+            }
+            for (StateRecord record : frequent) {
+                states.add(record.toState(reader.getWidth(), reader.getHeight(), reader.getMines()));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        SolverSettings preferences = SettingsFactory.GetSettings(SettingsFactory.Setting.SMALL_ANALYSIS);
+        Function<GameStateModel, Solver> solverFunction = (GameStateModel model) -> new Solver(model, preferences, false);
+        DecimalFormat format = new DecimalFormat("#.##");
+
+        Map<GameStateFuzzy, Location> table = new LinkedHashMap<>();
+        Map<GameStateFuzzy, String> comments = new LinkedHashMap<>();
+        for (GameStateFuzzy state : states) {
+            StateSampler sampler;
+            try {
+                sampler = new StateSampler(state);
+            } catch (IllegalArgumentException e) {
+                System.out.println(state + "\nSkipped: " + e.getMessage() + "\n");
+                continue;
+            }
+
+            List<Candidate> racing = new ArrayList<>();
+            for (Location click : getCandidates(state)) {
+                racing.add(new Candidate(click));
+            }
+            if (racing.isEmpty()) {
+                continue;
+            }
+
+            int round = 0;
+            int batch = firstBatch;
+            Candidate best;
+            while (true) {
+                RaceRound raceRound = new RaceRound(sampler, racing, batch, workers);
+                SampledBulk bulk = new SampledBulk(gameGenerator + round, (ExtendedConsumer consumer) -> {
+                    assert consumer instanceof RaceRound;
+                    RaceRound r = (RaceRound) consumer;
+                    return r.games >= r.total;
+                }, sampler.getGameSettings(), raceRound::nextGame, solverFunction, workers);
+                bulk.setQuiet(true);
+                bulk.registerConsumer(raceRound);
+                bulk.run();
+                try {
+                    bulk.consumer.get();
+                } catch (ExecutionException | InterruptedException e) {
+                    e.printStackTrace();
+                    return;
+                }
+                round++;
+
+                best = racing.get(0);
+                for (Candidate candidate : racing) {
+                    if (candidate.getWinRate() > best.getWinRate()) {
+                        best = candidate;
+                    }
+                }
+                double bestLower = best.getLower(z);
+                racing.removeIf(candidate -> candidate.getUpper(z) < bestLower);
+
+                if (racing.size() == 1 || best.games >= gamesMax) {
+                    break;
+                }
+                batch = Math.min(batch * 2, gamesMax - best.games);
+            }
+
+            String comment = "win rate " + format.format(100 * best.getWinRate()) + "% over " + best.games + " games, "
+                    + (racing.size() == 1 ? "ahead of all other tiles" : "level with " + (racing.size() - 1) + " other tiles")
+                    + " after " + round + " rounds";
+            System.out.println(state + "\nClick (" + best.click.x + ", " + best.click.y + "), " + comment + "\n");
+            table.put(state, best.click);
+            comments.put(state, comment);
+        }
+
+        try {
+            OpeningTable.save(table, comments, out);
+            System.out.println("Opening table for " + table.size() + " states written to " + out);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // one hidden tile from each set of tiles the state's own symmetries take to each other
+    private static List<Location> getCandidates(GameStateFuzzy state) {
+        BoardGeometry geometry = BoardGeometry.of(state.getWidth(), state.getHeight());
+        int[] values = new int[geometry.getCells()];
+        for (int index = 0; index < values.length; index++) {
+            Location location = geometry.getLocation(index);
+            values[index] = state.get(location.x, location.y);
+        }
+
+        List<int[]> selfSymmetries = new ArrayList<>();
+        for (int s = 0; s < geometry.getSymmetryCount(); s++) {
+            int[] symmetry = geometry.getSymmetry(s);
+            boolean same = true;
+            for (int index = 0; index < values.length && same; index++) {
+                same = values[index] == values[symmetry[index]];
+            }
+            if (same) {
+                selfSymmetries.add(symmetry);
+            }
+        }
+
+        List<Location> result = new ArrayList<>();
+        for (int index = 0; index < values.length; index++) {
+            if (values[index] != 9) {
+                continue;
+            }
+            boolean first = true;
+            for (int[] symmetry : selfSymmetries) {
+                first = first && symmetry[index] >= index;
+            }
+            if (first) {
+                result.add(geometry.getLocation(index));
+            }
+        }
+        return result;
+    }
+}
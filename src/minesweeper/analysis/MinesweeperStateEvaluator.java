@@ -0,0 +1,116 @@
+package minesweeper.analysis;
+
+import minesweeper.analysis.gamestate.GameStateFuzzy;
+import minesweeper.analysis.gamestate.GameStateFuzzyFactory;
+import minesweeper.analysis.gamestate.StateSampler;
+import minesweeper.bulk.ExtendedConsumer;
+import minesweeper.bulk.ExtendedRequest;
+import minesweeper.bulk.SampledBulk;
+import minesweeper.gamestate.GameStateModel;
+import minesweeper.settings.GameSettings;
+import minesweeper.solver.Solver;
+import minesweeper.solver.settings.SettingsFactory;
+import minesweeper.solver.settings.SolverSettings;
+import minesweeper.structure.Action;
+import minesweeper.util.CommandLineUtil;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the win rate from a game state by playing games which start in it, with the mines placed uniformly among
+ * the layouts consistent with the state (see {@link StateSampler}), rather than waiting for the state to come up.
+ */
+public class MinesweeperStateEvaluator {
+    private static class StateEvaluationResult extends ExtendedConsumer {
+        int games = 0;
+        int won = 0;
+        int lost = 0;
+
+        @Override
+        public void processRequest(ExtendedRequest request) {
+            int state = request.gs.getGameState();
+            if (state == GameStateModel.WON) {
+                won++;
+            } else if (state == GameStateModel.LOST) {
+                lost++;
+            }
+            games++;
+        }
+
+        @Override
+        public void processAction(ExtendedRequest request, Action action, BigDecimal probability, int number) {
+        }
+
+        @Override
+        public String print() {
+            DecimalFormat format = new DecimalFormat("#.###");
+            double winRate = 1.0 * won / Math.max(won + lost, 1);
+            double error = Math.sqrt(winRate * (1 - winRate) / Math.max(won + lost, 1));
+            return "Won " + won + " and lost " + lost + " of " + games + " games, win rate "
+                    + format.format(100 * winRate) + "% +/- " + format.format(100 * 1.96 * error) + "%";
+        }
+    }
+
+    /**
+     * Example args: -setting expert -state "0,0,1;1,0,2;0,1,2" -gamesMax 10000
+     * @param args
+     */
+    public static void main(String[] args) {
+        CommandLineParser parser = new DefaultParser();
+        Options options = new Options();
+        options.addOption("setting", true, "Game setting. Difficulty name or in the form of 12x34/56");
+        options.addOption("state", true, "Revealed tiles of the state as x,y,value separated by semicolons.");
+        options.addOption("gamesMax", true, "Number of games to play from the state.");
+        options.addOption("seed", true, "RNG seed. If not provided, default seed is used.");
+        options.addOption("core", true, "Number of cores to use. Default is 1.");
+
+        CommandLine cmdline;
+        try {
+            cmdline = parser.parse(options, args);
+        } catch (ParseException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        GameSettings gameSettings = CommandLineUtil.settingsFromString(cmdline.getOptionValue("setting"));
+        List<List<Integer>> locations = new ArrayList<>();
+        for (String tile : cmdline.getOptionValue("state").split(";")) {
+            String[] values = tile.trim().split(",");
+            assert values.length == 3 : "Each tile of the state must be x,y,value";
+            locations.add(Arrays.asList(Integer.parseInt(values[0].trim()), Integer.parseInt(values[1].trim()),
+                    Integer.parseInt(values[2].trim())));
+        }
+        GameStateFuzzy state = GameStateFuzzyFactory.create(locations, gameSettings);
+        StateSampler sampler = new StateSampler(state);
+
+        int gamesMax = Integer.parseInt(cmdline.getOptionValue("gamesMax"));
+        SolverSettings preferences = SettingsFactory.GetSettings(SettingsFactory.Setting.SMALL_ANALYSIS);
+        long gameGenerator = new Random().nextLong();
+        if (cmdline.hasOption("seed")) {
+            gameGenerator = Long.parseLong(cmdline.getOptionValue("seed"));
+        }
+        int workers = 1;
+        if (cmdline.hasOption("core")) {
+            workers = Integer.parseInt(cmdline.getOptionValue("core"));
+        }
+
+        System.out.println(state);
+        SampledBulk bulk = new SampledBulk(gameGenerator, (ExtendedConsumer consumer) -> {
+            assert consumer instanceof StateEvaluationResult;
+            return ((StateEvaluationResult) consumer).games >= gamesMax;
+        }, gameSettings, sampler::sample, (GameStateModel model) -> new Solver(model, preferences, false), workers);
+        bulk.setQuiet(true);
+        bulk.registerConsumer(new StateEvaluationResult());
+        bulk.run();
+    }
+}
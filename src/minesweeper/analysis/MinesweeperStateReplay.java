@@ -0,0 +1,107 @@
+package minesweeper.analysis;
+
+import minesweeper.analysis.gamestate.GameStateFuzzy;
+import minesweeper.bulk.GameReplay;
+import minesweeper.bulk.GameSample;
+import minesweeper.gamestate.GameStateModel;
+import minesweeper.settings.GameSettings;
+import minesweeper.settings.GameType;
+import minesweeper.solver.Solver;
+import minesweeper.solver.settings.SettingsFactory;
+import minesweeper.solver.settings.SolverSettings;
+import minesweeper.structure.Action;
+import minesweeper.util.CommandLineUtil;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Gets back to the positions of the example games {@link MinesweeperCommonStateAnalyzer} keeps with -samples,
+ * by playing them again with the same solver, then plays each on to the end.
+ */
+public class MinesweeperStateReplay {
+
+    /**
+     * Example args: -setting intermediate -samples 8126318723:3,-1294812:4
+     * @param args
+     */
+    public static void main(String[] args) {
+        CommandLineParser parser = new DefaultParser();
+        Options options = new Options();
+        options.addOption("setting", true, "Game setting. Difficulty name or in the form of 12x34/56");
+        options.addOption("gameType", true, "Game type. If not provided, defaults to standard");
+        options.addOption("samples", true, "Games to replay as seed:move, separated by commas, as printed by MinesweeperCommonStateAnalyzer.");
+
+        CommandLine cmdline;
+        try {
+            cmdline = parser.parse(options, args);
+        } catch (ParseException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        GameSettings gameSettings = CommandLineUtil.settingsFromString(cmdline.getOptionValue("setting"));
+        GameType gameType = GameType.STANDARD;
+        if (cmdline.hasOption("gameType")) {
+            gameType = CommandLineUtil.typesFromString(cmdline.getOptionValue("gameType"));
+        }
+        List<GameSample> samples = new ArrayList<>();
+        for (String sample : cmdline.getOptionValue("samples").split(",")) {
+            samples.add(GameSample.fromString(sample));
+        }
+
+        // the same solver as the analyzer, so the games are played the same way
+        SolverSettings preferences = SettingsFactory.GetSettings(SettingsFactory.Setting.SMALL_ANALYSIS);
+        Function<GameStateModel, Solver> solverFunction = (GameStateModel model) -> new Solver(model, preferences, false);
+
+        int won = 0;
+        int lost = 0;
+        for (GameSample sample : samples) {
+            GameStateModel gs = GameReplay.replay(gameType, gameSettings, Collections.emptyList(), solverFunction, sample);
+            if (gs == null) {
+                System.out.println("Game " + sample + " finished before the move, check the settings match the run\n");
+                continue;
+            }
+            System.out.println("Game " + sample);
+            System.out.println(new GameStateFuzzy(gs));
+
+            int state = finish(gs, solverFunction);
+            if (state == GameStateModel.WON) {
+                won++;
+                System.out.println("Won\n");
+            } else if (state == GameStateModel.LOST) {
+                lost++;
+                System.out.println("Lost\n");
+            } else {
+                System.out.println("No moves returned by the solver\n");
+            }
+        }
+        System.out.println("Replayed " + (won + lost) + " games, won " + won + " and lost " + lost);
+    }
+
+    // play the game on from where it is, returning how it ended
+    private static int finish(GameStateModel gs, Function<GameStateModel, Solver> solverFunction) {
+        Solver solver = solverFunction.apply(gs);
+        while (gs.getGameState() != GameStateModel.WON && gs.getGameState() != GameStateModel.LOST) {
+            solver.start();
+            Action[] moves = solver.getResult();
+            if (moves.length == 0) {
+                break;
+            }
+            for (Action move : moves) {
+                gs.doAction(move);
+                if (gs.getGameState() == GameStateModel.WON || gs.getGameState() == GameStateModel.LOST) {
+                    break;
+                }
+            }
+        }
+        return gs.getGameState();
+    }
+}
@@ -0,0 +1,142 @@
+package minesweeper.analysis;
+
+import minesweeper.analysis.gamestate.GameStateResult;
+import minesweeper.analysis.gamestate.StateRecord;
+import minesweeper.analysis.gamestate.StateRunMerger;
+import minesweeper.analysis.gamestate.StateRunReader;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Combines the state runs written by {@link MinesweeperCommonStateAnalyzer} with -runs into one run, and prints the
+ * common states report from a run for any target and sigma without playing the games again.
+ */
+public class MinesweeperStateRunMerger {
+
+    /**
+     * Example args: -out all.run -target 1000 run1.run run2.run runs/
+     * @param args
+     */
+    public static void main(String[] args) {
+        CommandLineParser parser = new DefaultParser();
+        Options options = new Options();
+        options.addOption("out", true, "File to write the merged run to. If not provided, the runs are only reported on.");
+        options.addOption("target", true, "Report all game states with 1 in target or more chance. If not provided, no report is printed.");
+        options.addOption("sigma", true, "Standard deviation, default is 4.");
+
+        CommandLine cmdline;
+        try {
+            cmdline = parser.parse(options, args);
+        } catch (ParseException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        // the runs are the remaining arguments, a directory stands for all the runs in it
+        List<File> inputs = new ArrayList<>();
+        for (String arg : cmdline.getArgs()) {
+            File file = new File(arg);
+            if (file.isDirectory()) {
+                File[] runs = file.listFiles((dir, name) -> name.endsWith(".run"));
+                if (runs != null) {
+                    Arrays.sort(runs);
+                    inputs.addAll(Arrays.asList(runs));
+                }
+            } else {
+                inputs.add(file);
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.out.println("No state runs given");
+            return;
+        }
+
+        try {
+            File merged;
+            boolean temporary = false;
+            if (cmdline.hasOption("out")) {
+                merged = new File(cmdline.getOptionValue("out"));
+                long games = StateRunMerger.merge(inputs, merged);
+                System.out.println("Merged " + inputs.size() + " runs covering " + games + " games into " + merged);
+            } else if (inputs.size() == 1) {
+                merged = inputs.get(0);
+            } else {
+                merged = File.createTempFile("states", ".run");
+                temporary = true;
+                StateRunMerger.merge(inputs, merged);
+            }
+
+            if (cmdline.hasOption("target")) {
+                int target = Integer.parseInt(cmdline.getOptionValue("target"));
+                double sigma = 4.0;
+                if (cmdline.hasOption("sigma")) {
+                    sigma = Double.parseDouble(cmdline.getOptionValue("sigma"));
+                }
+                System.out.println(report(merged, target, sigma));
+            }
+
+            if (temporary) {
+                merged.delete();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the states in the run frequent enough for the target, most frequent first
+     */
+    public static String report(File run, int target, double sigma) throws IOException {
+
+        List<StateRecord> frequent;
+        int width;
+        int height;
+        int mines;
+        long games;
+        try (StateRunReader reader = new StateRunReader(run)) {
+            width = reader.getWidth();
+            height = reader.getHeight();
+            mines = reader.getMines();
+            games = reader.getGames();
+            frequent = frequentStates(reader, target, sigma);
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (StateRecord record : frequent) {
+            GameStateResult result = record.toResult(width, height, mines);
+            builder.append(result.toString(games));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return the states left in the run which are frequent enough for the target, most frequent first
+     */
+    public static List<StateRecord> frequentStates(StateRunReader reader, int target, double sigma) throws IOException {
+
+        double mean = 1.0 * reader.getGames() / target;
+        double stdev = Math.sqrt(mean * (1 - 1.0 / target));
+        double limit = mean - sigma * stdev;
+
+        // only the frequent states are kept, the run itself is streamed
+        List<StateRecord> result = new ArrayList<>();
+        StateRecord record;
+        while ((record = reader.next()) != null) {
+            if (record.getAppeared() >= limit) {
+                result.add(record);
+            }
+        }
+
+        result.sort((left, right) -> Long.compare(right.getAppeared(), left.getAppeared()));
+        return result;
+    }
+}
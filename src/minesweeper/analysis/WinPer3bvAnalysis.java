@@ -1,12 +1,17 @@
 package minesweeper.analysis;
 
+import minesweeper.analysis.gamestate.GameStateFuzzy;
+import minesweeper.analysis.gamestate.OpeningTable;
 import minesweeper.bulk.ExtendedBulk;
 import minesweeper.bulk.ExtendedConsumer;
 import minesweeper.bulk.ExtendedRequest;
 import minesweeper.gamestate.GameStateModel;
 import minesweeper.settings.GameSettings;
 import minesweeper.settings.GameType;
+import minesweeper.solver.BruteForceCache;
+import minesweeper.solver.BruteForceGovernor;
 import minesweeper.solver.ExtendedSolver;
+import minesweeper.solver.OpeningStrategySolver;
 import minesweeper.solver.Solver;
 import minesweeper.solver.settings.SettingsFactory;
 import minesweeper.solver.settings.SolverSettings;
@@ -19,11 +24,14 @@ import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
@@ -53,7 +61,7 @@ public class WinPer3bvAnalysis {
         }
 
         @Override
-        public void processAction(GameStateModel model, Action action, BigDecimal probability, int number) {
+        public void processAction(ExtendedRequest request, Action action, BigDecimal probability, int number) {
             this.clicks++;
         }
 
@@ -75,6 +83,9 @@ public class WinPer3bvAnalysis {
         options.addOption("limit", true, "Number of left clicks to simulate. No flagging.");
         options.addOption("seed", true, "RNG seed. If not provided, default seed is used.");
         options.addOption("core", true, "Number of cores to use. Default is 1.");
+        options.addOption("bfdaMemory", true, "Megabytes all the workers together can use for brute force analysis. Default is a quarter of the heap.");
+        options.addOption("bfdaCache", true, "File to keep solved endgames in between runs. Loaded if it exists, saved at the end.");
+        options.addOption("opening", true, "Opening table, as written by MinesweeperOpeningSearch. If provided, a solver playing it is also run.");
 
         CommandLine cmdline;
         try {
@@ -99,6 +110,34 @@ public class WinPer3bvAnalysis {
         if (cmdline.hasOption("core")) {
             workers = Integer.parseInt(cmdline.getOptionValue("core"));
         }
+        if (cmdline.hasOption("bfdaMemory")) {
+            BruteForceGovernor.setBudget(Long.parseLong(cmdline.getOptionValue("bfdaMemory")) << 20);
+        }
+        File bfdaCache = null;
+        if (cmdline.hasOption("bfdaCache")) {
+            bfdaCache = new File(cmdline.getOptionValue("bfdaCache"));
+            if (bfdaCache.exists()) {
+                try {
+                    BruteForceCache.load(bfdaCache);
+                    System.out.println("Loaded " + BruteForceCache.size() + " solved endgames from " + bfdaCache);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        OpeningStrategySolver.Book opening = null;
+        if (cmdline.hasOption("opening")) {
+            File openingFile = new File(cmdline.getOptionValue("opening"));
+            try {
+                Map<GameStateFuzzy, Location> table = OpeningTable.load(openingFile);
+                opening = new OpeningStrategySolver.Book(table);
+                System.out.println("Loaded " + table.size() + " opening moves from " + openingFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+        }
 
         List<Location> corners = Arrays.asList(
                 new Location(0, 0),
@@ -106,29 +145,37 @@ public class WinPer3bvAnalysis {
                 new Location(gameSettings.width - 1, 0),
                 new Location(gameSettings.width - 1, gameSettings.height - 1)
         );
-        List<Function<GameStateModel, Solver>> solverFunctions = Arrays.asList(
+        List<Function<GameStateModel, Solver>> solverFunctions = new ArrayList<>(Arrays.asList(
                 (GameStateModel model) -> new ExtendedSolver(model, preferences, false),
-                (GameStateModel model) -> new ExtendedSolver(model, preferences, false) {
-                    @Override
-                    public FinalMoves doNewProcess() {
-                        return new FinalMoves(super.doNewProcess().result[0]);
-                    }
+                (GameStateModel model) -> {
+                    ExtendedSolver solver = new ExtendedSolver(model, preferences, false);
+                    solver.setOneMoveAtATime(true);
+                    return solver;
                 },
-                (GameStateModel model) -> new ExtendedSolver(model, preferences, false) {
-                    @Override
-                    public FinalMoves doNewProcess() {
-                        // Open 4 corners first.
-                        GameStateModel model = this.getGame();
-                        if (model.getActionCount() == 0) {
-                            Action[] cornerMoves = corners.stream()
-                                    .map((Location location) -> (new Action(location, Action.CLEAR)))
-                                    .toArray(Action[]::new);
-                            return new FinalMoves(cornerMoves);
+                (GameStateModel model) -> {
+                    ExtendedSolver solver = new ExtendedSolver(model, preferences, false) {
+                        @Override
+                        public FinalMoves doNewProcess() {
+                            // Open 4 corners first.
+                            GameStateModel model = this.getGame();
+                            if (model.getActionCount() == 0) {
+                                Action[] cornerMoves = corners.stream()
+                                        .map((Location location) -> (new Action(location, Action.CLEAR)))
+                                        .toArray(Action[]::new);
+                                return new FinalMoves(cornerMoves);
+                            }
+                            return super.doNewProcess();
                         }
-                        return new FinalMoves(super.doNewProcess().result[0]);
-                    }
+                    };
+                    solver.setOneMoveAtATime(true);
+                    return solver;
                 }
-        );
+        ));
+        if (opening != null) {
+            // the book is built once, every worker's solver looks its moves up in the same one
+            OpeningStrategySolver.Book book = opening;
+            solverFunctions.add((GameStateModel model) -> new OpeningStrategySolver(model, preferences, false, book));
+        }
         List<String> results = new ArrayList<>();
 
         for (Function<GameStateModel, Solver> solver : solverFunctions) {
@@ -139,6 +186,7 @@ public class WinPer3bvAnalysis {
                 WinPer3bvAnalysisResult analysisResult = (WinPer3bvAnalysisResult) consumer;
                 return (analysisResult.clicks >= limit);
             }, gameType, gameSettings, solver, workers);
+            bulk.setQuiet(true);
             bulk.registerConsumer(new WinPer3bvAnalysisResult(workers));
             bulk.run();
             try {
@@ -148,5 +196,14 @@ public class WinPer3bvAnalysis {
             }
         }
         for (String result : results) System.out.println(result);
+
+        if (bfdaCache != null) {
+            try {
+                BruteForceCache.save(bfdaCache);
+                System.out.println("Saved " + BruteForceCache.size() + " solved endgames to " + bfdaCache);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 }
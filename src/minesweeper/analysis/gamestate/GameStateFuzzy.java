@@ -3,45 +3,175 @@ package minesweeper.analysis.gamestate;
 import minesweeper.gamestate.GameStateModel;
 import minesweeper.settings.GameSettings;
 import minesweeper.structure.Location;
+import minesweeper.util.BoardGeometry;
+import minesweeper.util.BoardSnapshot;
+import minesweeper.util.ZobristHash;
+
+import java.util.Arrays;
 
 /**
  * Minesweeper game state.
  * The most common game state is "Initial state", followed by "Corner 1".
  *
+ * States which are the same board up to a symmetry are equal. Each state is stored turned to its canonical
+ * orientation, the smallest of the board's symmetries cell by cell, with the symmetry used to get there
+ * remembered. Cells are packed 16 to a long, 0-8 for a revealed tile and 9 for anything else.
+ *
  * @author didgogns
  */
 
 public class GameStateFuzzy {
-    protected final int[][] board;
+    private final static int BITS = 4;
+    private final static int PER_LONG = 64 / BITS;
+    private final static long MASK = (1L << BITS) - 1;
+
     protected final int width;
     protected final int height;
     protected final int mines;
-    Integer hashCode;
+    final BoardGeometry geometry;
+
+    // the board turned by the symmetry to its canonical orientation
+    private final long[] cells;
+    private final int symmetry;
+    private final int hashCode;
 
     public GameStateFuzzy(GameStateModel model) {
-        this.width = model.getWidth();
-        this.height = model.getHeight();
-        this.mines = model.getMines();
-        this.board = new int[width][height];
+        this(new BoardSnapshot(model), model.getMines());
+    }
+
+    public GameStateFuzzy(BoardSnapshot snapshot, int mines) {
+        this(snapshot.getGeometry().getWidth(), snapshot.getGeometry().getHeight(), mines, flatten(snapshot));
+    }
+
+    public GameStateFuzzy(GameSettings gamesettings, int[][] board) {
+        this(gamesettings.width, gamesettings.height, gamesettings.mines, flatten(gamesettings, board));
+    }
+
+    private GameStateFuzzy(int width, int height, int mines, byte[] board) {
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        this.geometry = BoardGeometry.of(width, height);
+
+        // pick the orientation which is smallest cell by cell
+        int best = 0;
+        for (int candidate = 1; candidate < geometry.getSymmetryCount(); candidate++) {
+            int[] bestCells = geometry.getSymmetry(best);
+            int[] candidateCells = geometry.getSymmetry(candidate);
+            for (int index = 0; index < board.length; index++) {
+                int c = board[candidateCells[index]] - board[bestCells[index]];
+                if (c != 0) {
+                    if (c < 0) best = candidate;
+                    break;
+                }
+            }
+        }
+        this.symmetry = best;
+
+        int[] canonical = geometry.getSymmetry(best);
+        this.cells = new long[packedLength(width, height)];
+        for (int index = 0; index < board.length; index++) {
+            cells[index / PER_LONG] |= (long) board[canonical[index]] << (BITS * (index % PER_LONG));
+        }
+
+        this.hashCode = 31 * (31 * (31 * width + height) + mines) + Arrays.hashCode(cells);
+    }
+
+    private static byte[] flatten(BoardSnapshot snapshot) {
+        byte[] board = new byte[snapshot.getGeometry().getCells()];
+        for (int index = 0; index < board.length; index++) {
+            board[index] = (byte) (snapshot.isRevealed(index) ? snapshot.query(index) : 9);
+        }
+        return board;
+    }
+
+    private static byte[] flatten(GameSettings gamesettings, int[][] board) {
+        assert (board.length == gamesettings.width);
+        assert (board[0].length == gamesettings.height);
+        BoardGeometry geometry = BoardGeometry.of(gamesettings);
+        byte[] result = new byte[geometry.getCells()];
+        for (int col = 0; col < gamesettings.width; col++) {
+            for (int row = 0; row < gamesettings.height; row++) {
+                assert (board[col][row] >= 0 && board[col][row] <= 9);
+                result[geometry.index(col, row)] = (byte) board[col][row];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Rebuild a state from its packed canonical cells, as returned by {@link #getCanonicalCells()}
+     */
+    static GameStateFuzzy fromCanonical(int width, int height, int mines, long[] cells) {
+        byte[] board = new byte[width * height];
+        for (int index = 0; index < board.length; index++) {
+            board[index] = (byte) ((cells[index / PER_LONG] >>> (BITS * (index % PER_LONG))) & MASK);
+        }
+        return new GameStateFuzzy(width, height, mines, board);
+    }
+
+    /**
+     * @return the number of longs the cells of a board of this size pack into
+     */
+    static int packedLength(int width, int height) {
+        return (width * height + PER_LONG - 1) / PER_LONG;
+    }
+
+    /**
+     * @return the packed cells in the canonical orientation, which must not be modified
+     */
+    long[] getCanonicalCells() {
+        return cells;
+    }
+
+    /**
+     * @return the index in the canonical orientation of a location in the state as it was given
+     */
+    int toCanonical(Location location) {
+        return geometry.getInverse(symmetry)[geometry.index(location)];
+    }
+
+    /**
+     * @return the value of the cell as the state was given, 0-8 for a revealed tile and 9 for anything else
+     */
+    public int get(int col, int row) {
+        int index = geometry.getInverse(symmetry)[geometry.index(col, row)];
+        return (int) ((cells[index / PER_LONG] >>> (BITS * (index % PER_LONG))) & MASK);
+    }
+
+    /**
+     * @return a hash of the state, for matching against the hash of a game in progress
+     */
+    public ZobristHash getZobristHash() {
+        ZobristHash result = new ZobristHash(geometry);
         for (int col = 0; col < width; col++) {
             for (int row = 0; row < height; row++) {
-                Location location = new Location(col, row);
-                board[col][row] = model.query(location);
-                if (board[col][row] < 0 || board[col][row] > 8) {
-                    board[col][row] = 9;
+                int value = get(col, row);
+                if (value <= 8) {
+                    result.reveal(geometry.index(col, row), value);
                 }
             }
         }
-        hashCode = null;
+        return result;
     }
 
-    public GameStateFuzzy(GameSettings gamesettings, int[][] board) {
-        this.width = gamesettings.width;
-        this.height = gamesettings.height;
-        this.mines = gamesettings.mines;
-        assert (board.length == width);
-        assert (board[0].length == height);
-        this.board = board;
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getMines() {
+        return mines;
+    }
+
+    /**
+     * @return the symmetry which turns this state to its canonical orientation
+     */
+    public int getCanonicalSymmetry() {
+        return symmetry;
     }
 
     @Override
@@ -52,32 +182,23 @@ public class GameStateFuzzy {
         }
 
         final GameStateFuzzy other = (GameStateFuzzy) obj;
-        if (this.hashCode() != other.hashCode()) return false;
+        if (this.hashCode != other.hashCode) return false;
         if (this.width != other.width) return false;
         if (this.height != other.height) return false;
         if (this.mines != other.mines) return false;
 
-        int iterations = 4;
-        if (this.width == this.height) iterations = 8;
-
-        for (int i = 0; i < iterations; i++) {
-            if (compare(other.board, (i & 4) != 0, (i & 2) != 0, (i & 1) != 0)) {
-                return true;
-            }
-        }
-        return false;
+        return Arrays.equals(this.cells, other.cells);
     }
 
+    /**
+     * @return the symmetry s for which each cell of this state is the same as the cell s takes it to in other
+     */
     public int getSymmetry(GameStateFuzzy other) {
-        int iterations = 4;
-        if (this.width == this.height) iterations = 8;
-
-        for (int i = 0; i < iterations; i++) {
-            if (compare(other.board, (i & 4) != 0, (i & 2) != 0, (i & 1) != 0)) {
-                return i;
-            }
+        if (!this.equals(other)) {
+            throw new IllegalArgumentException("GameStateFuzzy other must be equal to this!");
         }
-        throw new IllegalArgumentException("GameStateFuzzy other must be equal to this!");
+        // turn this to the canonical orientation, then back out to other's
+        return geometry.compose(other.symmetry, geometry.invert(this.symmetry));
     }
 
     @Override
@@ -86,7 +207,7 @@ public class GameStateFuzzy {
         builder.append("```\n");
         for (int row = 0; row < height; row++) {
             for (int col = 0; col < width; col++) {
-                builder.append(board[col][row]);
+                builder.append(get(col, row));
             }
             builder.append("\n");
         }
@@ -94,58 +215,8 @@ public class GameStateFuzzy {
         return builder.toString();
     }
 
-    private boolean compare(int[][] other, boolean rotate90, boolean flipRow, boolean flipCol) {
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-                int targetRow = row;
-                int targetCol = col;
-                if (flipRow) targetRow = height - 1 - row;
-                if (flipCol) targetCol = width - 1 - col;
-                if (rotate90) {
-                    // throw error when height != width?
-                    int temp = targetRow;
-                    targetRow = targetCol;
-                    targetCol = temp;
-                }
-                if (board[col][row] != other[targetCol][targetRow]) return false;
-            }
-        }
-        return true;
-    }
-
     @Override
     public int hashCode() {
-        if (this.hashCode != null) return hashCode;
-        int result = 0;
-
-        int iterations = 4;
-        if (this.width == this.height) iterations = 8;
-
-        for (int i = 0; i < iterations; i++) {
-            boolean rotate90 = (i & 4) != 0;
-            boolean flipRow = (i & 2) != 0;
-            boolean flipCol = (i & 1) != 0;
-
-            int tempHash = 0;
-            for (int row = 0; row < height; row++) {
-                for (int col = 0; col < width; col++) {
-                    int targetRow = row;
-                    int targetCol = col;
-                    if (flipRow) targetRow = height - 1 - row;
-                    if (flipCol) targetCol = width - 1 - col;
-                    if (rotate90) {
-                        // throw error when height != width?
-                        int temp = targetRow;
-                        targetRow = targetCol;
-                        targetCol = temp;
-                    }
-                    tempHash = tempHash * 31 + board[targetCol][targetRow];
-                }
-            }
-
-            result ^= tempHash;
-        }
-        hashCode = result;
-        return result;
+        return hashCode;
     }
 }
@@ -1,21 +1,38 @@
 package minesweeper.analysis.gamestate;
 
+import minesweeper.bulk.GameSample;
 import minesweeper.structure.Location;
+import minesweeper.util.BoardGeometry;
+import minesweeper.util.Reservoir;
 
 import java.text.DecimalFormat;
 import java.util.Comparator;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 public class GameStateResult {
-    public int appeared;
-    int won;
-    int lost;
+    public long appeared;
+    long won;
+    long lost;
     Set<Location> actions;
     GameStateFuzzy gameStateFuzzy;
+    int keySymmetry;
+    // games which reached the state, null unless samples are being kept
+    Reservoir<GameSample> samples;
 
     public GameStateResult(GameStateFuzzy gameStateFuzzy) {
+        this(gameStateFuzzy, gameStateFuzzy.getZobristHash().getKeySymmetry());
+    }
+
+    /**
+     * @param keySymmetry the symmetry which gave the state's {@link minesweeper.util.ZobristHash} key
+     */
+    public GameStateResult(GameStateFuzzy gameStateFuzzy, int keySymmetry) {
         this.gameStateFuzzy = gameStateFuzzy;
+        this.keySymmetry = keySymmetry;
         this.appeared = 0;
         this.won = 0;
         this.lost = 0;
@@ -24,14 +41,23 @@ public class GameStateResult {
 
     @Override
     public String toString() {
+        return toString(0);
+    }
+
+    /**
+     * @param games the number of games the state was counted over, the probability of reaching it isn't shown if 0
+     */
+    public String toString(long games) {
         StringBuilder builder = new StringBuilder();
         DecimalFormat probabilityFormat = new DecimalFormat("#.#");
         builder.append(gameStateFuzzy);
         builder.append("\n\n");
-        builder.append("Probability: ");
-        builder.append(probabilityFormat.format(100.0 * appeared / 1000000));
-        builder.append("%");
-        builder.append("\n\n");
+        if (games > 0) {
+            builder.append("Probability: ");
+            builder.append(probabilityFormat.format(100.0 * appeared / games));
+            builder.append("%");
+            builder.append("\n\n");
+        }
         builder.append("Winrate: ");
         builder.append(probabilityFormat.format(100.0 * won / (won + lost)));
         builder.append("%");
@@ -48,6 +74,16 @@ public class GameStateResult {
             isFirstAction = false;
         }
         builder.append("\n\n");
+        if (samples != null) {
+            builder.append("Examples ");
+            boolean isFirstSample = true;
+            for (GameSample sample : samples.getItems()) {
+                if (!isFirstSample) builder.append(", ");
+                builder.append(sample);
+                isFirstSample = false;
+            }
+            builder.append("\n\n");
+        }
         return builder.toString();
     }
 
@@ -59,24 +95,40 @@ public class GameStateResult {
      */
     public void addLocation(GameStateFuzzy anotherState, Location location) {
         int symmetry = this.gameStateFuzzy.getSymmetry(anotherState);
-        boolean rotate90 = (symmetry & 4) != 0;
-        boolean flipRow = (symmetry & 2) != 0;
-        boolean flipCol = (symmetry & 1) != 0;
+        BoardGeometry geometry = this.gameStateFuzzy.geometry;
+        this.actions.add(geometry.getLocation(geometry.getInverse(symmetry)[geometry.index(location)]));
+    }
 
-        int x = location.x;
-        int y = location.y;
-        if (rotate90) {
-            int temp = x;
-            x = y;
-            y = temp;
-        }
-        if (flipRow) {
-            y = this.gameStateFuzzy.height - 1 - y;
-        }
-        if (flipCol) {
-            x = this.gameStateFuzzy.width - 1 - x;
+    /**
+     * @param keySymmetry the symmetry which gave the key of the state where the game needs to be updated,
+     * that key must be the same as this state's.
+     * @param location Result of the solver in that state
+     */
+    public void addLocation(int keySymmetry, Location location) {
+        // both states seen through their key symmetry are the same board
+        BoardGeometry geometry = this.gameStateFuzzy.geometry;
+        int symmetry = geometry.compose(keySymmetry, geometry.invert(this.keySymmetry));
+        this.actions.add(geometry.getLocation(geometry.getInverse(symmetry)[geometry.index(location)]));
+    }
+
+    /**
+     * Keep a uniform sample of up to size of the games which reach the state from now on
+     */
+    public void keepSamples(int size) {
+        this.samples = new Reservoir<>(size);
+    }
+
+    public void addSample(GameSample sample, Random random) {
+        if (samples != null) {
+            samples.offer(sample, random);
         }
-        this.actions.add(new Location(x, y));
+    }
+
+    /**
+     * @return the sampled games which reached the state, empty if samples aren't being kept
+     */
+    public List<GameSample> getSamples() {
+        return samples == null ? Collections.emptyList() : samples.getItems();
     }
 
     public void addLose() {
@@ -92,7 +144,7 @@ public class GameStateResult {
     public static class FrequencyComparator implements Comparator<GameStateResult> {
         @Override
         public int compare(GameStateResult left, GameStateResult right) {
-            return Integer.valueOf(right.appeared).compareTo(left.appeared);
+            return Long.compare(right.appeared, left.appeared);
         }
     }
 }
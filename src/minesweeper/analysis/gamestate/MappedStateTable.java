@@ -0,0 +1,442 @@
+package minesweeper.analysis.gamestate;
+
+import minesweeper.structure.Location;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Exact counts for every game state seen, kept off the heap in memory mapped files so the number of states
+ * is limited by the disk rather than the JVM.
+ *
+ * The table is split into segments by the hash of the state, each an open addressing table in its own file with its
+ * own lock, so workers updating different states rarely wait for each other. A segment doubles in size when it
+ * becomes half full, rehashing into the next generation of its file. The file is only marked as a state table once the
+ * rehash is finished, and the older generation is removed as soon as it can be, or when the table is next opened.
+ *
+ * States are keyed by their packed canonical cells (see {@link GameStateFuzzy}). Each entry holds the number of times
+ * the state appeared, was won and was lost, and a histogram of the moves played from it in the canonical orientation.
+ * Only the first {@link #ACTION_SLOTS} different moves get their own count, any others are counted together.
+ *
+ * The table also counts the games which were added to it, see {@link #addGame()}, so the counts can be turned into
+ * frequencies. Reopening the directory with the same board settings carries on with the counts already there.
+ */
+public class MappedStateTable implements Closeable {
+
+    public final static int ACTION_SLOTS = 4;
+
+    private final static int FILE_MAGIC = 0x4D535443;   // "MSTC"
+    private final static int FILE_VERSION = 1;
+    private final static int HEADER_SIZE = 64;
+    private final static int SEGMENT_BITS = 6;
+    private final static long INITIAL_CAPACITY = 1024;
+
+    // layout of the header, the games are only kept in the first segment
+    private final static int CAPACITY = 24;
+    private final static int SIZE = 32;
+    private final static int GAMES = 40;
+
+    // layout of an entry
+    private final static int HASH = 0;
+    private final static int APPEARED = 8;
+    private final static int WON = 16;
+    private final static int LOST = 24;
+    private final static int OTHER_ACTIONS = 32;
+    private final static int ACTIONS = 40;     // (cell + 1 as an int, count as a long), cell + 1 of 0 is unused
+    private final static int ACTION_SIZE = 12;
+    private final static int KEY = ACTIONS + ACTION_SLOTS * ACTION_SIZE;
+
+    /**
+     * The counts for one state, as read back from the table
+     */
+    public static class StateCounts {
+        public final GameStateFuzzy state;
+        public final long appeared;
+        public final long won;
+        public final long lost;
+        public final int[] actionCells;     // in the canonical orientation, see BoardGeometry for the index
+        public final long[] actionCounts;
+        public final long otherActions;
+
+        StateCounts(GameStateFuzzy state, long appeared, long won, long lost, int[] actionCells, long[] actionCounts, long otherActions) {
+            this.state = state;
+            this.appeared = appeared;
+            this.won = won;
+            this.lost = lost;
+            this.actionCells = actionCells;
+            this.actionCounts = actionCounts;
+            this.otherActions = otherActions;
+        }
+    }
+
+    private final File directory;
+    private final int width;
+    private final int height;
+    private final int mines;
+    private final int words;
+    private final int entrySize;
+    private final Segment[] segments;
+
+    public MappedStateTable(File directory, int width, int height, int mines) throws IOException {
+        this.directory = directory;
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        this.words = GameStateFuzzy.packedLength(width, height);
+        this.entrySize = KEY + 8 * words;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+
+        this.segments = new Segment[1 << SEGMENT_BITS];
+        for (int i=0; i < segments.length; i++) {
+            segments[i] = new Segment(String.format("segment-%02d", i));
+        }
+    }
+
+    /**
+     * Count the state appearing in a game with the move played from it
+     * @param action the move, in the state as it was given
+     */
+    public void add(GameStateFuzzy state, Location action, boolean won) throws IOException {
+        if (state.width != width || state.height != height || state.mines != mines) {
+            throw new IllegalArgumentException("State is for a different board to the table");
+        }
+        long[] key = state.getCanonicalCells();
+        long hash = hash(key);
+        segments[(int) (hash >>> (64 - SEGMENT_BITS))].add(hash, key, state.toCanonical(action), won);
+    }
+
+    /**
+     * Count a game whose states have all been added
+     */
+    public void addGame() {
+        segments[0].addGame();
+    }
+
+    /**
+     * @return the number of games added to the table
+     */
+    public long getGames() {
+        return segments[0].getGames();
+    }
+
+    /**
+     * @return the number of different states in the table
+     */
+    public long size() {
+        long result = 0;
+        for (Segment segment: segments) {
+            result = result + segment.getSize();
+        }
+        return result;
+    }
+
+    /**
+     * Pass every state in the table to the consumer, in no particular order
+     */
+    public void forEach(Consumer<StateCounts> consumer) {
+        for (Segment segment: segments) {
+            segment.forEach(consumer);
+        }
+    }
+
+    /**
+     * Write any changes through to the files
+     */
+    public void flush() {
+        for (Segment segment: segments) {
+            segment.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        for (Segment segment: segments) {
+            segment.removeRetired();
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    // a 64 bit mix of the cells, never 0 since that marks an empty entry
+    private static long hash(long[] key) {
+        long result = 0x9E3779B97F4A7C15L;
+        for (long word: key) {
+            result = (result ^ word) * 0xBF58476D1CE4E5B9L;
+            result = result ^ (result >>> 31);
+        }
+        return result == 0 ? 1 : result;
+    }
+
+    private class Segment {
+        private final String name;
+        private File file;
+        private int generation;
+        private MappedByteBuffer buffer;
+        private long capacity;
+        private long size;
+
+        // older generations which couldn't be removed yet, they may still be mapped
+        private final List<File> retired = new ArrayList<>();
+
+        Segment(String name) throws IOException {
+            this.name = name;
+
+            // the newest complete generation is the segment, any others are left from an earlier grow
+            File latest = null;
+            File[] files = directory.listFiles((dir, fileName) -> fileName.startsWith(name + ".") && generationOf(fileName) >= 0);
+            if (files != null) {
+                for (File candidate: files) {
+                    int candidateGeneration = generationOf(candidate.getName());
+                    if ((latest == null || candidateGeneration > generation) && isComplete(candidate)) {
+                        latest = candidate;
+                        generation = candidateGeneration;
+                    }
+                }
+                for (File candidate: files) {
+                    if (candidate != latest) {
+                        Files.deleteIfExists(candidate.toPath());
+                    }
+                }
+            }
+
+            if (latest != null) {
+                this.file = latest;
+                this.buffer = map(file, -1);
+                if (buffer.getInt(4) != FILE_VERSION) {
+                    throw new IOException("File " + file + " is not a state table");
+                }
+                if (buffer.getInt(8) != width || buffer.getInt(12) != height || buffer.getInt(16) != mines) {
+                    throw new IOException("File " + file + " is for a different board");
+                }
+                this.capacity = buffer.getLong(CAPACITY);
+                this.size = buffer.getLong(SIZE);
+            } else {
+                this.generation = 0;
+                this.file = fileOf(generation);
+                this.capacity = INITIAL_CAPACITY;
+                this.buffer = create(file, capacity);
+                this.buffer.putInt(0, FILE_MAGIC);
+            }
+        }
+
+        private File fileOf(int generation) {
+            return new File(directory, name + (generation == 0 ? "" : "." + generation) + ".dat");
+        }
+
+        // the generation of one of this segment's files, or -1 if it isn't one
+        private int generationOf(String fileName) {
+            String rest = fileName.substring(name.length() + 1);
+            if (rest.equals("dat")) {
+                return 0;
+            }
+            if (!rest.endsWith(".dat")) {
+                return -1;
+            }
+            try {
+                return Integer.parseInt(rest.substring(0, rest.length() - 4));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        // a file is only marked as a state table once it has been completely written
+        private boolean isComplete(File candidate) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(candidate, "r")) {
+                return raf.length() >= HEADER_SIZE && raf.readInt() == FILE_MAGIC;
+            }
+        }
+
+        // the header is written apart from the magic number, which is left for when the file is complete
+        private MappedByteBuffer create(File target, long slots) throws IOException {
+            long length = HEADER_SIZE + slots * entrySize;
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("State table segment " + target + " has grown beyond 2GB");
+            }
+            MappedByteBuffer result = map(target, length);
+            result.putInt(4, FILE_VERSION);
+            result.putInt(8, width);
+            result.putInt(12, height);
+            result.putInt(16, mines);
+            result.putInt(20, words);
+            result.putLong(CAPACITY, slots);
+            result.putLong(SIZE, 0);
+            result.putLong(GAMES, 0);
+            return result;
+        }
+
+        private MappedByteBuffer map(File target, long length) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(target, "rw")) {
+                if (length >= 0) {
+                    raf.setLength(length);
+                }
+                return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+            }
+        }
+
+        synchronized long getSize() {
+            return size;
+        }
+
+        synchronized void addGame() {
+            buffer.putLong(GAMES, buffer.getLong(GAMES) + 1);
+        }
+
+        synchronized long getGames() {
+            return buffer.getLong(GAMES);
+        }
+
+        synchronized void add(long hash, long[] key, int actionCell, boolean won) throws IOException {
+
+            int entry = find(buffer, capacity, hash, key);
+            if (buffer.getLong(entry + HASH) == 0) {
+                // keep the table no more than half full so the probes stay short
+                if (2 * (size + 1) > capacity) {
+                    grow();
+                    entry = find(buffer, capacity, hash, key);
+                }
+                buffer.putLong(entry + HASH, hash);
+                for (int i=0; i < words; i++) {
+                    buffer.putLong(entry + KEY + 8 * i, key[i]);
+                }
+                size++;
+                buffer.putLong(SIZE, size);
+            }
+
+            buffer.putLong(entry + APPEARED, buffer.getLong(entry + APPEARED) + 1);
+            int result = won ? WON : LOST;
+            buffer.putLong(entry + result, buffer.getLong(entry + result) + 1);
+
+            for (int slot=0; slot < ACTION_SLOTS; slot++) {
+                int position = entry + ACTIONS + ACTION_SIZE * slot;
+                int cell = buffer.getInt(position);
+                if (cell == 0) {
+                    buffer.putInt(position, actionCell + 1);
+                    buffer.putLong(position + 4, 1);
+                    return;
+                } else if (cell == actionCell + 1) {
+                    buffer.putLong(position + 4, buffer.getLong(position + 4) + 1);
+                    return;
+                }
+            }
+            buffer.putLong(entry + OTHER_ACTIONS, buffer.getLong(entry + OTHER_ACTIONS) + 1);
+        }
+
+        // the entry holding the key, or the empty entry where it belongs
+        private int find(MappedByteBuffer table, long slots, long hash, long[] key) {
+            long slot = (hash & Long.MAX_VALUE) % slots;
+            while (true) {
+                int entry = (int) (HEADER_SIZE + slot * entrySize);
+                long found = table.getLong(entry + HASH);
+                if (found == 0) {
+                    return entry;
+                }
+                if (found == hash && keyMatches(table, entry, key)) {
+                    return entry;
+                }
+                slot++;
+                if (slot == slots) {
+                    slot = 0;
+                }
+            }
+        }
+
+        private boolean keyMatches(MappedByteBuffer table, int entry, long[] key) {
+            for (int i=0; i < words; i++) {
+                if (table.getLong(entry + KEY + 8 * i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // rehash into the next generation of the file, twice the size, and then swap it in
+        private void grow() throws IOException {
+            File grown = fileOf(generation + 1);
+            long newCapacity = capacity * 2;
+            // anything left from a resize which didn't finish would be taken as entries
+            Files.deleteIfExists(grown.toPath());
+            MappedByteBuffer target = create(grown, newCapacity);
+
+            long[] key = new long[words];
+            byte[] copy = new byte[entrySize];
+            for (long slot=0; slot < capacity; slot++) {
+                int entry = (int) (HEADER_SIZE + slot * entrySize);
+                long hash = buffer.getLong(entry + HASH);
+                if (hash == 0) {
+                    continue;
+                }
+                for (int i=0; i < words; i++) {
+                    key[i] = buffer.getLong(entry + KEY + 8 * i);
+                }
+                int moved = find(target, newCapacity, hash, key);
+                buffer.position(entry);
+                buffer.get(copy);
+                target.position(moved);
+                target.put(copy);
+            }
+            target.putLong(SIZE, size);
+            target.putLong(GAMES, buffer.getLong(GAMES));
+            target.force();
+            target.putInt(0, FILE_MAGIC);
+            target.force();
+
+            // the old file can't be removed while it is mapped on some platforms, so it is tried again on close
+            retired.add(file);
+            buffer = target;
+            file = grown;
+            generation++;
+            capacity = newCapacity;
+            removeRetired();
+        }
+
+        synchronized void removeRetired() {
+            retired.removeIf(retiredFile -> retiredFile.delete() || !retiredFile.exists());
+        }
+
+        synchronized void forEach(Consumer<StateCounts> consumer) {
+            long[] key = new long[words];
+            for (long slot=0; slot < capacity; slot++) {
+                int entry = (int) (HEADER_SIZE + slot * entrySize);
+                if (buffer.getLong(entry + HASH) == 0) {
+                    continue;
+                }
+                for (int i=0; i < words; i++) {
+                    key[i] = buffer.getLong(entry + KEY + 8 * i);
+                }
+
+                int used = 0;
+                while (used < ACTION_SLOTS && buffer.getInt(entry + ACTIONS + ACTION_SIZE * used) != 0) {
+                    used++;
+                }
+                int[] actionCells = new int[used];
+                long[] actionCounts = new long[used];
+                for (int i=0; i < used; i++) {
+                    actionCells[i] = buffer.getInt(entry + ACTIONS + ACTION_SIZE * i) - 1;
+                    actionCounts[i] = buffer.getLong(entry + ACTIONS + ACTION_SIZE * i + 4);
+                }
+
+                consumer.accept(new StateCounts(GameStateFuzzy.fromCanonical(width, height, mines, key.clone()),
+                        buffer.getLong(entry + APPEARED), buffer.getLong(entry + WON), buffer.getLong(entry + LOST),
+                        actionCells, actionCounts, buffer.getLong(entry + OTHER_ACTIONS)));
+            }
+        }
+
+        synchronized void flush() {
+            buffer.force();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package minesweeper.analysis.gamestate;
+
+import minesweeper.settings.GameSettings;
+import minesweeper.structure.Location;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the opening strategy {@link minesweeper.solver.OpeningStrategySolver} plays, as a text file.
+ *
+ * Each state is one line, the board setting, the revealed tiles of the state as x,y,value separated by semicolons
+ * (the form {@link GameStateFuzzyFactory} takes) and the tile to clear as x,y, separated by spaces:
+ * <pre>
+ * 30x16/99 0,0,1;1,0,2;0,1,2 2,1
+ * </pre>
+ * Blank lines and lines starting with # are ignored.
+ */
+public class OpeningTable {
+
+    public static Map<GameStateFuzzy, Location> load(File file) throws IOException {
+        Map<GameStateFuzzy, Location> result = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if (parts.length != 3) {
+                    throw new IOException("Line " + number + " of " + file + " should be a setting, a state and a tile");
+                }
+                try {
+                    String[] setting = parts[0].split("[x/]");
+                    GameSettings settings = GameSettings.create(Integer.parseInt(setting[0]), Integer.parseInt(setting[1]),
+                            Integer.parseInt(setting[2]));
+                    List<List<Integer>> locations = new ArrayList<>();
+                    for (String tile : parts[1].split(";")) {
+                        locations.add(parseInts(tile, 3));
+                    }
+                    List<Integer> click = parseInts(parts[2], 2);
+                    result.put(GameStateFuzzyFactory.create(locations, settings), new Location(click.get(0), click.get(1)));
+                } catch (RuntimeException e) {
+                    throw new IOException("Line " + number + " of " + file + " can't be read: " + e.getMessage(), e);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param comments a comment for each state written before its line, or null
+     */
+    public static void save(Map<GameStateFuzzy, Location> table, Map<GameStateFuzzy, String> comments, File file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<GameStateFuzzy, Location> entry : table.entrySet()) {
+                GameStateFuzzy state = entry.getKey();
+                if (comments != null && comments.containsKey(state)) {
+                    writer.write("# " + comments.get(state));
+                    writer.newLine();
+                }
+                writer.write(toString(state) + " " + entry.getValue().x + "," + entry.getValue().y);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * @return the setting and the revealed tiles of the state, as a line of the table starts
+     */
+    public static String toString(GameStateFuzzy state) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(state.width).append("x").append(state.height).append("/").append(state.mines).append(" ");
+        boolean isFirstTile = true;
+        for (int col = 0; col < state.width; col++) {
+            for (int row = 0; row < state.height; row++) {
+                int value = state.get(col, row);
+                if (value > 8) {
+                    continue;
+                }
+                if (!isFirstTile) builder.append(";");
+                builder.append(col).append(",").append(row).append(",").append(value);
+                isFirstTile = false;
+            }
+        }
+        return builder.toString();
+    }
+
+    private static List<Integer> parseInts(String input, int count) {
+        String[] values = input.split(",");
+        if (values.length != count) {
+            throw new IllegalArgumentException("Expected " + count + " numbers in " + input);
+        }
+        Integer[] result = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = Integer.parseInt(values[i].trim());
+        }
+        return Arrays.asList(result);
+    }
+}
@@ -0,0 +1,117 @@
+package minesweeper.analysis.gamestate;
+
+import minesweeper.structure.Location;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The counts for one state in a state run, keyed by the state's packed canonical cells.
+ * The actions are the cells played from the state, as indices in the canonical orientation, in ascending order.
+ */
+public class StateRecord {
+
+    /**
+     * Orders records by key, comparing the packed cells as unsigned numbers
+     */
+    public final static Comparator<StateRecord> KEY_ORDER = (left, right) -> compareKeys(left.key, right.key);
+
+    final long[] key;
+    long appeared;
+    long won;
+    long lost;
+    int[] actions;
+
+    StateRecord(long[] key, long appeared, long won, long lost, int[] actions) {
+        this.key = key;
+        this.appeared = appeared;
+        this.won = won;
+        this.lost = lost;
+        this.actions = actions;
+    }
+
+    public static StateRecord of(GameStateResult result) {
+        GameStateFuzzy state = result.gameStateFuzzy;
+        int[] actions = new int[result.actions.size()];
+        int i = 0;
+        for (Location action : result.actions) {
+            actions[i++] = state.toCanonical(action);
+        }
+        Arrays.sort(actions);
+        return new StateRecord(state.getCanonicalCells().clone(), result.appeared, result.won, result.lost, actions);
+    }
+
+    public static StateRecord of(MappedStateTable.StateCounts counts) {
+        int[] actions = counts.actionCells.clone();
+        Arrays.sort(actions);
+        return new StateRecord(counts.state.getCanonicalCells().clone(), counts.appeared, counts.won, counts.lost, actions);
+    }
+
+    static int compareKeys(long[] left, long[] right) {
+        for (int i = 0; i < left.length; i++) {
+            int c = Long.compareUnsigned(left[i], right[i]);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+
+    /**
+     * Add the counts of a record for the same state to this one, and take the union of the actions
+     */
+    void merge(StateRecord other) {
+        appeared += other.appeared;
+        won += other.won;
+        lost += other.lost;
+
+        int[] union = new int[actions.length + other.actions.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < actions.length || j < other.actions.length) {
+            int next;
+            if (j == other.actions.length || (i < actions.length && actions[i] <= other.actions[j])) {
+                next = actions[i++];
+            } else {
+                next = other.actions[j++];
+            }
+            if (size == 0 || union[size - 1] != next) {
+                union[size++] = next;
+            }
+        }
+        actions = Arrays.copyOf(union, size);
+    }
+
+    public long getAppeared() {
+        return appeared;
+    }
+
+    public long getWon() {
+        return won;
+    }
+
+    public long getLost() {
+        return lost;
+    }
+
+    /**
+     * @return the record's state, in its canonical orientation
+     */
+    public GameStateFuzzy toState(int width, int height, int mines) {
+        return GameStateFuzzy.fromCanonical(width, height, mines, key);
+    }
+
+    /**
+     * @return the record as a result which can be printed, the state in its canonical orientation
+     */
+    public GameStateResult toResult(int width, int height, int mines) {
+        GameStateFuzzy state = toState(width, height, mines);
+        GameStateResult result = new GameStateResult(state);
+        result.appeared = appeared;
+        result.won = won;
+        result.lost = lost;
+        for (int action : actions) {
+            result.actions.add(state.geometry.getLocation(action));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,84 @@
+package minesweeper.analysis.gamestate;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merges state runs for the same board into one run, adding together the counts of records for the same state
+ * and taking the union of their actions. Only the current record of each input is held in memory.
+ */
+public class StateRunMerger {
+
+    // the current record of one of the runs being merged
+    private static class Head {
+        final StateRunReader reader;
+        StateRecord record;
+
+        Head(StateRunReader reader) throws IOException {
+            this.reader = reader;
+            this.record = reader.next();
+        }
+    }
+
+    /**
+     * @return the number of games played over all the runs
+     */
+    public static long merge(List<File> inputs, File output) throws IOException {
+
+        List<StateRunReader> readers = new ArrayList<>();
+        try {
+            long games = 0;
+            for (File input : inputs) {
+                StateRunReader reader = new StateRunReader(input);
+                readers.add(reader);
+                StateRunReader first = readers.get(0);
+                if (reader.getWidth() != first.getWidth() || reader.getHeight() != first.getHeight() || reader.getMines() != first.getMines()) {
+                    throw new IOException("State run " + input + " is for a different board to " + first.getFile());
+                }
+                games = games + reader.getGames();
+            }
+            if (readers.isEmpty()) {
+                throw new IOException("No state runs to merge");
+            }
+
+            PriorityQueue<Head> heads = new PriorityQueue<>((left, right) -> StateRecord.KEY_ORDER.compare(left.record, right.record));
+            for (StateRunReader reader : readers) {
+                Head head = new Head(reader);
+                if (head.record != null) {
+                    heads.add(head);
+                }
+            }
+
+            StateRunReader first = readers.get(0);
+            try (StateRunWriter writer = new StateRunWriter(output, first.getWidth(), first.getHeight(), first.getMines(), games)) {
+                while (!heads.isEmpty()) {
+                    StateRecord merged = take(heads);
+                    while (!heads.isEmpty() && StateRecord.KEY_ORDER.compare(heads.peek().record, merged) == 0) {
+                        merged.merge(take(heads));
+                    }
+                    writer.write(merged);
+                }
+            }
+            return games;
+
+        } finally {
+            for (StateRunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    // remove the smallest record, moving its run on to the next one
+    private static StateRecord take(PriorityQueue<Head> heads) throws IOException {
+        Head head = heads.poll();
+        StateRecord result = head.record;
+        head.record = head.reader.next();
+        if (head.record != null) {
+            heads.add(head);
+        }
+        return result;
+    }
+}
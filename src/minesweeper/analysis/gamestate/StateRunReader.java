@@ -0,0 +1,81 @@
+package minesweeper.analysis.gamestate;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Reads the state records of a run written by {@link StateRunWriter}, one at a time.
+ */
+public class StateRunReader implements Closeable {
+
+    private final File file;
+    private final DataInputStream in;
+    private final int width;
+    private final int height;
+    private final int mines;
+    private final long games;
+
+    public StateRunReader(File file) throws IOException {
+        this.file = file;
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        if (in.readInt() != StateRunWriter.FILE_MAGIC || in.readInt() != StateRunWriter.FILE_VERSION) {
+            in.close();
+            throw new IOException("File " + file + " is not a state run");
+        }
+        this.width = in.readInt();
+        this.height = in.readInt();
+        this.mines = in.readInt();
+        this.games = in.readLong();
+    }
+
+    /**
+     * @return the next record, or null at the end of the run
+     */
+    public StateRecord next() throws IOException {
+        int words = in.readInt();
+        if (words == 0) {
+            return null;
+        }
+        long[] key = new long[words];
+        for (int i = 0; i < words; i++) {
+            key[i] = in.readLong();
+        }
+        long appeared = in.readLong();
+        long won = in.readLong();
+        long lost = in.readLong();
+        int[] actions = new int[in.readInt()];
+        for (int i = 0; i < actions.length; i++) {
+            actions[i] = in.readInt();
+        }
+        return new StateRecord(key, appeared, won, lost, actions);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getMines() {
+        return mines;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,91 @@
+package minesweeper.analysis.gamestate;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes records given in any order as one sorted state run, holding at most {@link #RUN_RECORDS} of them in memory.
+ * Each time that many have been added they are sorted and spilled to a temporary run, and closing merges
+ * the temporary runs into the output.
+ */
+public class StateRunSorter implements Closeable {
+
+    public final static int RUN_RECORDS = 1 << 18;
+
+    private final File output;
+    private final int width;
+    private final int height;
+    private final int mines;
+    private final long games;
+
+    private final List<StateRecord> records = new ArrayList<>();
+    private final List<File> spilled = new ArrayList<>();
+
+    public StateRunSorter(File output, int width, int height, int mines, long games) {
+        this.output = output;
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        this.games = games;
+    }
+
+    public void add(StateRecord record) throws IOException {
+        records.add(record);
+        if (records.size() >= RUN_RECORDS) {
+            spill();
+        }
+    }
+
+    private void spill() throws IOException {
+        File file = new File(output.getPath() + "." + spilled.size() + ".tmp");
+        // the games are counted once, in the first temporary run
+        try (StateRunWriter writer = new StateRunWriter(file, width, height, mines, spilled.isEmpty() ? games : 0)) {
+            write(writer);
+        }
+        spilled.add(file);
+    }
+
+    // sort what we have and write it, adding together any records for the same state
+    private void write(StateRunWriter writer) throws IOException {
+        records.sort(StateRecord.KEY_ORDER);
+        StateRecord pending = null;
+        for (StateRecord record : records) {
+            if (pending != null && StateRecord.KEY_ORDER.compare(pending, record) == 0) {
+                pending.merge(record);
+            } else {
+                if (pending != null) {
+                    writer.write(pending);
+                }
+                pending = record;
+            }
+        }
+        if (pending != null) {
+            writer.write(pending);
+        }
+        records.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (spilled.isEmpty()) {
+            try (StateRunWriter writer = new StateRunWriter(output, width, height, mines, games)) {
+                write(writer);
+            }
+            return;
+        }
+
+        if (!records.isEmpty()) {
+            spill();
+        }
+        try {
+            StateRunMerger.merge(spilled, output);
+        } finally {
+            for (File file : spilled) {
+                file.delete();
+            }
+        }
+    }
+}
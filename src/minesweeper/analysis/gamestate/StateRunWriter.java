@@ -0,0 +1,60 @@
+package minesweeper.analysis.gamestate;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes a state run: a header with the board and the number of games played, followed by state records in
+ * ascending key order. Runs from different analyses of the same board can be merged with {@link StateRunMerger}.
+ */
+public class StateRunWriter implements Closeable {
+
+    final static int FILE_MAGIC = 0x4D535352;   // "MSSR"
+    final static int FILE_VERSION = 1;
+
+    private final DataOutputStream out;
+    private long[] lastKey = null;
+
+    public StateRunWriter(File file, int width, int height, int mines, long games) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        out.writeInt(FILE_MAGIC);
+        out.writeInt(FILE_VERSION);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeInt(mines);
+        out.writeLong(games);
+    }
+
+    /**
+     * @param record must have a greater key than the record written before it
+     */
+    public void write(StateRecord record) throws IOException {
+        if (lastKey != null && StateRecord.compareKeys(lastKey, record.key) >= 0) {
+            throw new IllegalStateException("State run records must be written in ascending key order");
+        }
+        lastKey = record.key;
+
+        out.writeInt(record.key.length);
+        for (long word : record.key) {
+            out.writeLong(word);
+        }
+        out.writeLong(record.appeared);
+        out.writeLong(record.won);
+        out.writeLong(record.lost);
+        out.writeInt(record.actions.length);
+        for (int action : record.actions) {
+            out.writeInt(action);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // an empty key marks the end of the run, so a truncated file can be told apart from a complete one
+        out.writeInt(0);
+        out.close();
+    }
+}
@@ -0,0 +1,138 @@
+package minesweeper.analysis.gamestate;
+
+import minesweeper.gamestate.GameStateModel;
+import minesweeper.gamestate.GameStateStatic;
+import minesweeper.settings.GameSettings;
+import minesweeper.solver.LogProbabilityEngine;
+import minesweeper.structure.Action;
+import minesweeper.structure.Location;
+import minesweeper.util.BoardGeometry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Creates games which start in a given state, with the mines placed uniformly among all the layouts consistent
+ * with it. The layouts are drawn from the solutions of a {@link LogProbabilityEngine} for the state, so each is as
+ * likely as it is for a game which reaches the state, and a rare state can be played out directly rather than
+ * waiting for it to come up.
+ *
+ * Not thread safe.
+ */
+public class StateSampler {
+
+    private final GameStateFuzzy state;
+    private final GameSettings gameSettings;
+    private final List<Location> revealed = new ArrayList<>();
+    private final List<Location> offEdge = new ArrayList<>();
+    private final LogProbabilityEngine engine;
+
+    public StateSampler(GameStateFuzzy state) {
+        this.state = state;
+        this.gameSettings = GameSettings.create(state.width, state.height, state.mines);
+        BoardGeometry geometry = state.geometry;
+
+        List<Location> witnesses = new ArrayList<>();
+        List<Integer> witnessMines = new ArrayList<>();
+        List<Location> squares = new ArrayList<>();
+        int hidden = 0;
+        for (int index=0; index < geometry.getCells(); index++) {
+            Location location = geometry.getLocation(index);
+            int value = state.get(location.x, location.y);
+            if (value == 9) {
+                hidden++;
+                boolean witnessed = false;
+                for (int neighbour: geometry.getNeighbours(index)) {
+                    Location other = geometry.getLocation(neighbour);
+                    witnessed = witnessed || state.get(other.x, other.y) != 9;
+                }
+                if (witnessed) {
+                    squares.add(location);
+                } else {
+                    offEdge.add(location);
+                }
+                continue;
+            }
+
+            revealed.add(location);
+            boolean onEdge = false;
+            for (int neighbour: geometry.getNeighbours(index)) {
+                Location other = geometry.getLocation(neighbour);
+                onEdge = onEdge || state.get(other.x, other.y) == 9;
+            }
+            if (onEdge) {
+                // clearing a revealed 0 would open its neighbours as well, so the game wouldn't be in the state
+                if (value == 0) {
+                    throw new IllegalArgumentException("Tile " + location + " is a revealed 0 next to a hidden tile");
+                }
+                witnesses.add(location);
+                witnessMines.add(value);
+            } else if (value != 0) {
+                throw new IllegalArgumentException("Tile " + location + " has no hidden neighbours for its mines");
+            }
+        }
+        if (revealed.isEmpty()) {
+            throw new IllegalArgumentException("The state has no revealed tiles");
+        }
+
+        int[] mines = new int[witnessMines.size()];
+        for (int i=0; i < mines.length; i++) {
+            mines[i] = witnessMines.get(i);
+        }
+        this.engine = new LogProbabilityEngine(witnesses, mines, squares, hidden - squares.size(), state.mines);
+        this.engine.setKeepSolutions(true);
+        this.engine.process();
+        if (!engine.isComplete()) {
+            throw new IllegalArgumentException("No mine layouts consistent with the state were found, or there were too many to enumerate");
+        }
+    }
+
+    /**
+     * @return the locations of the mines in a layout drawn uniformly from all those consistent with the state
+     */
+    public List<Location> sampleMines(Random random) {
+        List<Location> result = new ArrayList<>();
+        int left = engine.sample(random, result);
+
+        List<Location> tiles = new ArrayList<>(offEdge);
+        for (int k=0; k < left; k++) {
+            int j = k + random.nextInt(tiles.size() - k);
+            result.add(tiles.get(j));
+            tiles.set(j, tiles.get(k));
+        }
+        return result;
+    }
+
+    /**
+     * @return a game with a layout drawn uniformly from those consistent with the state, with the state's tiles revealed
+     */
+    public GameStateModel sample(Random random) {
+        return create(sampleMines(random));
+    }
+
+    /**
+     * @param mines a layout consistent with the state, as given by {@link #sampleMines(Random)}
+     * @return a game with the mines placed and the state's tiles revealed
+     */
+    public GameStateModel create(List<Location> mines) {
+        int[][] layout = new int[mines.size()][];
+        for (int i=0; i < layout.length; i++) {
+            layout[i] = new int[] {mines.get(i).x, mines.get(i).y};
+        }
+
+        GameStateModel result = new GameStateStatic(gameSettings, layout);
+        for (Location location: revealed) {
+            result.doAction(new Action(location, Action.CLEAR));
+        }
+        return result;
+    }
+
+    public GameStateFuzzy getState() {
+        return state;
+    }
+
+    public GameSettings getGameSettings() {
+        return gameSettings;
+    }
+}
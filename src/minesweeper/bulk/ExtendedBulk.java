@@ -6,6 +6,8 @@ import minesweeper.random.DefaultRNG;
 import minesweeper.random.RNG;
 import minesweeper.settings.GameSettings;
 import minesweeper.settings.GameType;
+import minesweeper.solver.BruteForceCache;
+import minesweeper.solver.BruteForceGovernor;
 import minesweeper.solver.Solver;
 import minesweeper.solver.settings.SolverSettings;
 import minesweeper.structure.Action;
@@ -47,6 +49,9 @@ public class ExtendedBulk implements Runnable {
     private final RNG seeder;
     private volatile boolean finished = false;
 
+    // when quiet the workers don't report starting and stopping
+    private boolean quiet = false;
+
     private long startTime;
     private long endTime;
     private ScheduledExecutorService executor;
@@ -93,6 +98,8 @@ public class ExtendedBulk implements Runnable {
         executor = Executors.newScheduledThreadPool(1);
         executor.scheduleAtFixedRate(() -> {
             System.out.println("Main thread waiting for bulk run to complete...");
+            System.out.println(BruteForceGovernor.getStatus() + "; " + BruteForceCache.size() + " solved endgames cached, "
+                    + BruteForceCache.getHits() + " hits and " + BruteForceCache.getMisses() + " misses");
             if (finished) {
                 executor.shutdown();
                 this.endTime = System.currentTimeMillis();
@@ -169,6 +176,14 @@ public class ExtendedBulk implements Runnable {
         this.preActions = actions;
     }
 
+    public void setQuiet(boolean quiet) {
+        this.quiet = quiet;
+    }
+
+    protected boolean isQuiet() {
+        return quiet;
+    }
+
     protected GameStateModel getGameState(RNG seeder) {
         // play the pre-actions while not dead
         while (true) {
@@ -1,6 +1,5 @@
 package minesweeper.bulk;
 
-import minesweeper.gamestate.GameStateModel;
 import minesweeper.structure.Action;
 
 import java.math.BigDecimal;
@@ -11,10 +10,11 @@ import java.util.concurrent.CompletableFuture;
  */
 public abstract class ExtendedConsumer extends CompletableFuture<String> {
     public abstract void processRequest(ExtendedRequest request);
-    public abstract void processAction(GameStateModel model, Action action, BigDecimal probability, int number);
+    public abstract void processAction(ExtendedRequest request, Action action, BigDecimal probability, int number);
     public abstract String print();
 
-    public void finishThread() {
+    // each worker calls this as it stops, so it is synchronised to count them all
+    public synchronized void finishThread() {
         cores--;
         if (cores == 0) {
             complete(print());
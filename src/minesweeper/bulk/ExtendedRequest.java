@@ -1,6 +1,10 @@
 package minesweeper.bulk;
 
 import minesweeper.gamestate.GameStateModel;
+import minesweeper.util.ZobristHash;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class ExtendedRequest {
 
@@ -27,4 +31,10 @@ public class ExtendedRequest {
     public int slot;        // the slot the request is to be store in the buffer
     public GameStateModel gs;
     public int core;               // the worker number
+    public int moves;              // the number of solver moves played in the game so far, see GameSample
+
+    // filled in by the consumer as the worker plays the game and read back when the request is processed,
+    // so each game's moves stay with the game rather than in maps shared by all the workers
+    public ZobristHash stateHash;
+    public final List<TrajectoryEntry> trajectory = new ArrayList<>();
 }
@@ -1,6 +1,7 @@
 package minesweeper.bulk;
 
 import minesweeper.gamestate.GameStateModel;
+import minesweeper.solver.ExtendedSolver;
 import minesweeper.solver.Solver;
 import minesweeper.structure.Action;
 
@@ -21,7 +22,9 @@ public class ExtendedWorker implements Runnable {
     @Override
     public void run() {
 
-        System.out.println("worker-" + number + " is starting");
+        if (!controller.isQuiet()) {
+            System.out.println("worker-" + number + " is starting");
+        }
 
         ExtendedRequest request = controller.getNextRequest(null);
         request.core = this.number;
@@ -54,7 +57,9 @@ public class ExtendedWorker implements Runnable {
 
         }
 
-        System.out.println(Thread.currentThread().getName() + " is stopping");
+        if (!controller.isQuiet()) {
+            System.out.println(Thread.currentThread().getName() + " is stopping");
+        }
         controller.consumer.finishThread();
     }
 
@@ -69,43 +74,52 @@ public class ExtendedWorker implements Runnable {
 
         Solver solver = controller.solverFunction.apply(request.gs);
 
-        play: while (true) {
+        try {
+            play: while (true) {
 
-            Action[] moves;
-            try {
-                solver.start();
-                moves = solver.getResult();
-            } catch (Exception e) {
-                System.out.println("Game " + request.gs.showGameKey() + " has thrown an exception!");
-                e.printStackTrace();
-                return;
-            }
+                Action[] moves;
+                try {
+                    solver.start();
+                    moves = solver.getResult();
+                } catch (Exception e) {
+                    System.out.println("Game " + request.gs.showGameKey() + " has thrown an exception!");
+                    e.printStackTrace();
+                    return;
+                }
 
-            if (moves.length == 0) {
-                System.out.println(request.gs.getSeed() + " - No moves returned by the solver");
-                return;
-            }
+                if (moves.length == 0) {
+                    System.out.println(request.gs.getSeed() + " - No moves returned by the solver");
+                    return;
+                }
 
-            // play all the moves until all done, or the game is won or lost
-            for (Action move : moves) {
+                // play all the moves until all done, or the game is won or lost
+                for (Action move : moves) {
 
-                BigDecimal prob = move.getBigProb();
+                    BigDecimal prob = move.getBigProb();
 
-                if (prob.compareTo(BigDecimal.ZERO) <= 0 || prob.compareTo(BigDecimal.ONE) > 0) {
-                    System.out.println("Game (" + request.gs.showGameKey() + ") move with probability of " + prob + "! - " + move);
-                }
+                    // certain moves are the vast majority and can't be out of range, so skip the BigDecimal checks for them
+                    if (!move.isCertainty() && (prob.signum() <= 0 || prob.compareTo(BigDecimal.ONE) > 0)) {
+                        System.out.println("Game (" + request.gs.showGameKey() + ") move with probability of " + prob + "! - " + move);
+                    }
 
-                request.gs.doAction(move);
+                    request.gs.doAction(move);
+                    request.moves++;
 
-                state = request.gs.getGameState();
+                    state = request.gs.getGameState();
 
-                // only monitor good guesses (brute force, probability engine, zonal, opening book and hooks)
-                this.controller.consumer.processAction(request.gs, move, prob, number);
+                    // only monitor good guesses (brute force, probability engine, zonal, opening book and hooks)
+                    this.controller.consumer.processAction(request, move, prob, number);
 
-                if (state == GameStateModel.LOST || state == GameStateModel.WON) {
-                    break play;
+                    if (state == GameStateModel.LOST || state == GameStateModel.WON) {
+                        break play;
+                    }
                 }
             }
+        } finally {
+            // the solver keeps brute force trees charged to the governor between moves, they aren't needed now the game is over
+            if (solver instanceof ExtendedSolver) {
+                ((ExtendedSolver) solver).finish();
+            }
         }
     }
 
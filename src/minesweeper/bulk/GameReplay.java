@@ -0,0 +1,67 @@
+package minesweeper.bulk;
+
+import minesweeper.gamestate.GameFactory;
+import minesweeper.gamestate.GameStateModel;
+import minesweeper.settings.GameSettings;
+import minesweeper.settings.GameType;
+import minesweeper.solver.ExtendedSolver;
+import minesweeper.solver.Solver;
+import minesweeper.structure.Action;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Plays a game from a bulk run again, the way {@link ExtendedWorker} played it, and stops at a given move.
+ * The game is created from its seed, so this needs the same game type, settings, pre-actions and solver as the run.
+ */
+public class GameReplay {
+
+    /**
+     * @param sample the seed of the game and the number of solver moves to play
+     * @return the game with that many moves played, or null if the game was over or the solver stopped before then.
+     * The last move played may have finished the game
+     */
+    public static GameStateModel replay(GameType gameType, GameSettings gameSettings, List<Action> preActions,
+                                        Function<GameStateModel, ? extends Solver> solverFunction, GameSample sample) {
+
+        GameStateModel gs = GameFactory.create(gameType, gameSettings, sample.seed);
+        for (Action a: preActions) {
+            gs.doAction(a);
+            if (gs.getGameState() == GameStateModel.LOST) {
+                return null;
+            }
+        }
+
+        int played = 0;
+        Solver solver = solverFunction.apply(gs);
+        try {
+            while (played < sample.move) {
+                // the game finished before the move was reached, so it isn't the game of the run
+                if (gs.getGameState() == GameStateModel.WON || gs.getGameState() == GameStateModel.LOST) {
+                    return null;
+                }
+
+                solver.start();
+                Action[] moves = solver.getResult();
+                if (moves.length == 0) {
+                    return null;
+                }
+
+                for (Action move : moves) {
+                    gs.doAction(move);
+                    played++;
+                    if (played == sample.move || gs.getGameState() == GameStateModel.LOST || gs.getGameState() == GameStateModel.WON) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            // the solver's brute force trees aren't needed once the replay stops
+            if (solver instanceof ExtendedSolver) {
+                ((ExtendedSolver) solver).finish();
+            }
+        }
+        return gs;
+    }
+}
@@ -0,0 +1,32 @@
+package minesweeper.bulk;
+
+/**
+ * A position reached in a bulk run, given by the seed of the game and the number of moves the solver had played
+ * in it. {@link GameReplay} can play the game again to get back to the position.
+ */
+public class GameSample {
+    public final long seed;
+    public final int move;
+
+    public GameSample(long seed, int move) {
+        this.seed = seed;
+        this.move = move;
+    }
+
+    /**
+     * @param input in the form seed:move, as given by {@link #toString()}
+     */
+    public static GameSample fromString(String input) {
+        int separator = input.indexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Game sample must be in the form seed:move, not " + input);
+        }
+        return new GameSample(Long.parseLong(input.substring(0, separator).trim()),
+                Integer.parseInt(input.substring(separator + 1).trim()));
+    }
+
+    @Override
+    public String toString() {
+        return seed + ":" + move;
+    }
+}
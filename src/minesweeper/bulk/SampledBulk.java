@@ -0,0 +1,32 @@
+package minesweeper.bulk;
+
+import minesweeper.gamestate.GameStateModel;
+import minesweeper.random.RNG;
+import minesweeper.settings.GameSettings;
+import minesweeper.settings.GameType;
+import minesweeper.solver.Solver;
+
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * A bulk run whose games come from a source rather than the game factory, for example games which start part way
+ * through. Each game gets its own random number generator seeded from the run's seed, so a run can be repeated.
+ * Pre-actions are not played.
+ */
+public class SampledBulk extends ExtendedBulk {
+
+    private final Function<Random, GameStateModel> gameSource;
+
+    public SampledBulk(long seed, Function<ExtendedConsumer, Boolean> endCondition, GameSettings gameSettings,
+                       Function<Random, GameStateModel> gameSource, Function<GameStateModel, ? extends Solver> solverFunction, int workers) {
+        super(seed, endCondition, GameType.STANDARD, gameSettings, solverFunction, workers);
+        this.gameSource = gameSource;
+    }
+
+    // called from the synchronised getNextRequest, so the source is only used by one thread at a time
+    @Override
+    protected GameStateModel getGameState(RNG seeder) {
+        return gameSource.apply(new Random(seeder.random(0)));
+    }
+}
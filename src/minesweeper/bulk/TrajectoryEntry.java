@@ -0,0 +1,23 @@
+package minesweeper.bulk;
+
+import minesweeper.structure.Action;
+import minesweeper.util.BoardSnapshot;
+
+/**
+ * A move recorded in a request's trajectory, with the key of the board state it was recorded in.
+ */
+public class TrajectoryEntry {
+    public final long key;
+    public final int keySymmetry;   // the symmetry which gave the key, see ZobristHash
+    public final Action action;
+    public final BoardSnapshot snapshot;   // the board, if the consumer needs more than the key, otherwise null
+    public final int move;         // the number of moves played in the game when the entry was recorded
+
+    public TrajectoryEntry(long key, int keySymmetry, Action action, BoardSnapshot snapshot, int move) {
+        this.key = key;
+        this.keySymmetry = keySymmetry;
+        this.action = action;
+        this.snapshot = snapshot;
+        this.move = move;
+    }
+}
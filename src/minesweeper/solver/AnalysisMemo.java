@@ -0,0 +1,181 @@
+package minesweeper.solver;
+
+import minesweeper.structure.Area;
+import minesweeper.structure.Location;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results of hypothetical evaluations made during a single analysis, keyed by the hypothetical change.
+ * Guess evaluation and fifty-fifty detection ask about the same positions more than once, this lets them be computed once.
+ *
+ * Every result is keyed by the edge it was computed against as well as the change, since an analysis can look at
+ * more than one edge. Results are shared between callers, so they must only be read once they are in the memo.
+ *
+ * Must be cleared whenever the board state is processed.
+ */
+class AnalysisMemo {
+
+    // a location revealed on a particular edge
+    private static final class OutcomeKey {
+        private final WitnessWeb edge;
+        private final Location location;
+
+        private OutcomeKey(WitnessWeb edge, Location location) {
+            this.edge = edge;
+            this.location = location;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof OutcomeKey)) {
+                return false;
+            }
+            OutcomeKey other = (OutcomeKey) obj;
+            // edges are compared by identity, each is fixed once built
+            return this.edge == other.edge && this.location.equals(other.location);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(location, System.identityHashCode(edge));
+        }
+    }
+
+    // the set of mines / no mines being validated on a particular edge against a particular set of dead locations
+    private static final class PositionKey {
+        private final WitnessWeb edge;
+        private final Set<Location> mines;
+        private final Set<Location> noMines;
+        private final Area deadLocations;
+
+        private PositionKey(WitnessWeb edge, List<Location> mines, List<Location> noMines, Area deadLocations) {
+            this.edge = edge;
+            this.mines = new HashSet<>(mines);
+            this.noMines = (noMines == null) ? Collections.emptySet() : new HashSet<>(noMines);
+            this.deadLocations = deadLocations;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PositionKey)) {
+                return false;
+            }
+            PositionKey other = (PositionKey) obj;
+            // the edge and dead locations are compared by identity, they are fixed for the whole analysis
+            return this.edge == other.edge && this.deadLocations == other.deadLocations
+                    && this.mines.equals(other.mines) && this.noMines.equals(other.noMines);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mines, noMines, System.identityHashCode(edge), System.identityHashCode(deadLocations));
+        }
+    }
+
+    // looked up and filled in from the analysis pool as well as the analysis thread
+    private final Map<OutcomeKey, Solver.RunPeResult[]> outcomes = new ConcurrentHashMap<>();
+    private final Map<PositionKey, SolutionCounter> counters = new ConcurrentHashMap<>();
+
+    // the edge the witnessed squares were calculated for
+    private WitnessWeb edge;
+    private Set<Location> edgeSquares;
+
+    private final LongAdder outcomeHits = new LongAdder();
+    private final LongAdder counterHits = new LongAdder();
+
+    void clear() {
+        outcomes.clear();
+        counters.clear();
+        synchronized (this) {
+            edge = null;
+            edgeSquares = null;
+        }
+        outcomeHits.reset();
+        counterHits.reset();
+    }
+
+    boolean hasOutcomes(WitnessWeb wholeEdge, Location location) {
+        return outcomes.containsKey(new OutcomeKey(wholeEdge, location));
+    }
+
+    Solver.RunPeResult getOutcome(WitnessWeb wholeEdge, Location location, int value) {
+        Solver.RunPeResult[] results = outcomes.get(new OutcomeKey(wholeEdge, location));
+        if (results == null || value < 0 || value >= results.length || results[value] == null) {
+            return null;
+        }
+        outcomeHits.increment();
+        return results[value];
+    }
+
+    void putOutcome(WitnessWeb wholeEdge, Location location, int value, Solver.RunPeResult result) {
+        outcomes.computeIfAbsent(new OutcomeKey(wholeEdge, location), l -> new Solver.RunPeResult[9])[value] = result;
+    }
+
+    SolutionCounter getCounter(WitnessWeb wholeEdge, List<Location> mines, List<Location> noMines, Area deadLocations) {
+        SolutionCounter result = counters.get(new PositionKey(wholeEdge, mines, noMines, deadLocations));
+        if (result != null) {
+            counterHits.increment();
+        }
+        return result;
+    }
+
+    /**
+     * @param counter must already have been processed, it is handed to every caller asking about the same position
+     */
+    void putCounter(WitnessWeb wholeEdge, List<Location> mines, List<Location> noMines, Area deadLocations, SolutionCounter counter) {
+        counters.put(new PositionKey(wholeEdge, mines, noMines, deadLocations), counter);
+    }
+
+    /**
+     * The unrevealed squares adjacent to the edge's witnesses. Calculated once per edge, so this must be called
+     * from the analysis thread before any parallel evaluation starts.
+     */
+    synchronized Set<Location> getWitnessedSquares(BoardState boardState, WitnessWeb wholeEdge) {
+        if (edge != wholeEdge) {
+            edge = wholeEdge;
+            edgeSquares = Collections.unmodifiableSet(new LinkedHashSet<>(boardState.getUnrevealedArea(wholeEdge.getPrunedWitnesses()).getLocations()));
+        }
+        return edgeSquares;
+    }
+
+    /**
+     * The squares witnessed once an extra witness is revealed at the location: the edge's squares less the
+     * location itself plus the location's own unrevealed neighbours.
+     */
+    Area extendWitnessedSquares(BoardState boardState, WitnessWeb wholeEdge, BoardStateOverlay overlay, Location location) {
+        Set<Location> result = new LinkedHashSet<>(getWitnessedSquares(boardState, wholeEdge));
+        result.remove(location);
+        for (Location l: overlay.getAdjacentSquaresIterable(location)) {
+            if (overlay.isUnrevealed(l)) {
+                result.add(l);
+            }
+        }
+        return new Area(result);
+    }
+
+    /**
+     * The squares witnessed by the edge once the mines have been placed.
+     */
+    Area reduceWitnessedSquares(BoardState boardState, WitnessWeb wholeEdge, List<Location> mines) {
+        Set<Location> result = new LinkedHashSet<>(getWitnessedSquares(boardState, wholeEdge));
+        result.removeAll(mines);
+        return new Area(result);
+    }
+
+    long getOutcomeHits() {
+        return outcomeHits.sum();
+    }
+
+    long getCounterHits() {
+        return counterHits.sum();
+    }
+}
@@ -0,0 +1,277 @@
+package minesweeper.solver;
+
+import minesweeper.gamestate.MoveMethod;
+import minesweeper.structure.Action;
+import minesweeper.structure.Area;
+import minesweeper.structure.Location;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Copy-on-write view of a {@link BoardState} used for what-if analysis.
+ * Hypothetical witnesses and flags are recorded in the overlay and the base board is never modified,
+ * so several overlays of the same base can be evaluated at the same time.
+ *
+ * The overlay answers queries the same way the base board would after the equivalent
+ * setWitnessValue / setFlagConfirmed calls. In particular {@link #getTotalUnrevealedCount()} is
+ * not adjusted, callers still subtract the tiles they have changed.
+ *
+ * The base board must not be processed while an overlay of it is in use.
+ *
+ * The engines take a {@link BoardState}, so the overlay has to extend it, but the board it inherits is never
+ * processed: every query goes to the overlay's changes or to the base. The overlay can't itself be processed or
+ * given actions.
+ */
+public class BoardStateOverlay extends BoardState {
+    private final BoardState base;
+
+    // hypothetical changes, keyed by the tile they are placed on
+    private final Map<Location, Integer> witnesses = new HashMap<>();
+    private final Set<Location> flags = new HashSet<>();
+
+    public BoardStateOverlay(Solver solver, BoardState base) {
+        super(solver);
+        this.base = base;
+    }
+
+    public BoardState getBase() {
+        return base;
+    }
+
+    public boolean isEmpty() {
+        return witnesses.isEmpty() && flags.isEmpty();
+    }
+
+    private boolean isChanged(Location location) {
+        return witnesses.containsKey(location) || flags.contains(location);
+    }
+
+    @Override
+    public void setWitnessValue(Location location, int value) {
+        witnesses.put(location, value);
+    }
+
+    @Override
+    public void clearWitness(Location location) {
+        witnesses.remove(location);
+    }
+
+    @Override
+    public void setFlagConfirmed(Location location) {
+        flags.add(location);
+    }
+
+    @Override
+    public void unsetFlagConfirmed(Location location) {
+        flags.remove(location);
+    }
+
+    @Override
+    public boolean isRevealed(Location location) {
+        return witnesses.containsKey(location) || base.isRevealed(location);
+    }
+
+    @Override
+    public boolean isUnrevealed(Location location) {
+        if (isChanged(location)) {
+            return false;
+        }
+        return base.isUnrevealed(location);
+    }
+
+    @Override
+    public boolean isUnrevealed(int x, int y) {
+        if (isEmpty()) {
+            return base.isUnrevealed(x, y);
+        }
+        return isUnrevealed(new Location(x, y));
+    }
+
+    @Override
+    public boolean isConfirmedFlag(Location location) {
+        return flags.contains(location) || base.isConfirmedFlag(location);
+    }
+
+    @Override
+    public int getWitnessValue(Location location) {
+        Integer value = witnesses.get(location);
+        if (value != null) {
+            return value;
+        }
+        return base.getWitnessValue(location);
+    }
+
+    @Override
+    public int countAdjacentConfirmedFlags(Location location) {
+        int result = base.countAdjacentConfirmedFlags(location);
+        for (Location flag : flags) {
+            if (flag.isAdjacent(location) && !base.isConfirmedFlag(flag)) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int countAdjacentUnrevealed(Location location) {
+        int result = base.countAdjacentUnrevealed(location);
+        for (Location witness : witnesses.keySet()) {
+            if (witness.isAdjacent(location) && base.isUnrevealed(witness)) {
+                result--;
+            }
+        }
+        for (Location flag : flags) {
+            if (flag.isAdjacent(location) && base.isUnrevealed(flag)) {
+                result--;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Location> getAdjacentUnrevealedSquares(Location location) {
+        List<Location> result = new ArrayList<>();
+        for (Location l : base.getAdjacentUnrevealedSquares(location)) {
+            if (!isChanged(l)) {
+                result.add(l);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Location> getWitnesses(List<Location> squares) {
+        List<Location> result = new ArrayList<>(base.getWitnesses(squares));
+        for (Location witness : witnesses.keySet()) {
+            for (Location square : squares) {
+                if (witness.isAdjacent(square)) {
+                    result.add(witness);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Location> getAllLivingWitnesses() {
+        List<Location> result = new ArrayList<>();
+        for (Location witness : base.getAllLivingWitnesses()) {
+            if (countAdjacentUnrevealed(witness) > 0) {
+                result.add(witness);
+            }
+        }
+        for (Location witness : witnesses.keySet()) {
+            if (countAdjacentUnrevealed(witness) > 0) {
+                result.add(witness);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Area getUnrevealedArea(List<? extends Location> witnesses) {
+        Set<Location> result = new LinkedHashSet<>();
+        for (Location witness : witnesses) {
+            for (Location l : getAdjacentSquaresIterable(witness)) {
+                if (isUnrevealed(l)) {
+                    result.add(l);
+                }
+            }
+        }
+        return new Area(result);
+    }
+
+    @Override
+    public List<Location> getAllUnrevealedSquares() {
+        List<Location> result = new ArrayList<>();
+        for (Location l : base.getAllUnrevealedSquares()) {
+            if (!isChanged(l)) {
+                result.add(l);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int getTotalUnrevealedCount() {
+        return base.getTotalUnrevealedCount();
+    }
+
+    @Override
+    public int getConfirmedFlagCount() {
+        int result = base.getConfirmedFlagCount();
+        for (Location flag : flags) {
+            if (!base.isConfirmedFlag(flag)) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int getTotalFlagCount() {
+        return base.getTotalFlagCount();
+    }
+
+    @Override
+    public Iterable<Location> getAdjacentSquaresIterable(Location location) {
+        return base.getAdjacentSquaresIterable(location);
+    }
+
+    @Override
+    public int getGameWidth() {
+        return base.getGameWidth();
+    }
+
+    @Override
+    public int getGameHeight() {
+        return base.getGameHeight();
+    }
+
+    @Override
+    public boolean isHighDensity() {
+        return base.isHighDensity();
+    }
+
+    @Override
+    public List<Action> getActions() {
+        return base.getActions();
+    }
+
+    @Override
+    public boolean alreadyActioned(Location location) {
+        return base.alreadyActioned(location);
+    }
+
+    @Override
+    public int getUnplayedMoves(MoveMethod method) {
+        return base.getUnplayedMoves(method);
+    }
+
+    @Override
+    public int getTestMoveBalance() {
+        return base.getTestMoveBalance();
+    }
+
+    @Override
+    public boolean validateData() {
+        return base.validateData();
+    }
+
+    @Override
+    public void process() {
+        throw new UnsupportedOperationException("An overlay is never processed, process the base board");
+    }
+
+    @Override
+    public void setAction(Action action) {
+        throw new UnsupportedOperationException("Actions can't be played on an overlay");
+    }
+}
@@ -0,0 +1,407 @@
+package minesweeper.solver;
+
+import minesweeper.gamestate.GameStateModel;
+import minesweeper.structure.Action;
+import minesweeper.structure.Area;
+import minesweeper.structure.Location;
+import minesweeper.util.BoardGeometry;
+import minesweeper.util.BoardSnapshot;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the solver's view of the living witnesses and the squares they witness up to date between moves.
+ *
+ * Rather than scanning the whole board every move, the tracker starts from the moves the solver handed out,
+ * follows any cascade of zeros they opened, and applies just those changes.
+ * If the result doesn't agree with the game's own counts (e.g. the board was changed by something other than
+ * the solver's moves) the tracker rebuilds itself from a full scan.
+ *
+ * The tracker also keeps a worklist of dirty witnesses, those near a tile which changed since they were last looked at.
+ * Only these can produce new trivial or local moves, so the rest of the witnesses don't need to be examined again.
+ *
+ * The board state must have been processed before {@link #update()} is called.
+ */
+public class BoardTracker {
+    private final GameStateModel myGame;
+    private final BoardState boardState;
+    private final int width;
+    private final int height;
+
+    // locations are interned by index = x * height + y, which is the order the board is scanned in
+    private final BoardGeometry geometry;
+
+    private final boolean[] revealed;
+    private final boolean[] flagged;
+    private final int[] values;
+    private final int[] adjacentUnrevealed;   // neighbours which are neither revealed nor flagged
+    private final int[] adjacentRevealed;
+    private final int[] adjacentFlags;
+
+    // a change can give a new trivial move to the witnesses next to it, and a new local move to witnesses up to 3 tiles away
+    private final static int TRIVIAL_RADIUS = 1;
+    private final static int LOCAL_RADIUS = 3;
+    private final BitSet dirtyTrivial;
+    private final BitSet dirtyLocal;
+
+    private final BitSet livingWitnesses;
+    private final BitSet witnessedSquares;
+
+    // the unrevealed squares off the edge, grouped by (adjacent unrevealed * 9 + adjacent flags) which is all a guess
+    // off the edge is chosen on, so only the first square in each group ever needs to be considered
+    private final static int GROUPS = 81;
+    private final BitSet[] offEdgeGroups;
+    private final int[] offEdgeGroup;
+
+    private int revealedCount = 0;
+    private int flagCount = 0;
+    private boolean built = false;
+
+    // incremented whenever something changes, so results derived from the tracker can be reused
+    private int revision = 0;
+
+    // moves handed out since the last update, the changes to the board start from these
+    private final List<Location> seeds = new ArrayList<>();
+
+    // the locations which changed in the last update, or null if it was rebuilt
+    private List<Location> changed = new ArrayList<>();
+
+    public BoardTracker(GameStateModel myGame, BoardState boardState) {
+        this.myGame = myGame;
+        this.boardState = boardState;
+        this.width = myGame.getWidth();
+        this.height = myGame.getHeight();
+
+        this.geometry = BoardGeometry.of(width, height);
+        int cells = geometry.getCells();
+
+        this.revealed = new boolean[cells];
+        this.flagged = new boolean[cells];
+        this.values = new int[cells];
+        this.adjacentUnrevealed = new int[cells];
+        this.adjacentRevealed = new int[cells];
+        this.adjacentFlags = new int[cells];
+        this.dirtyTrivial = new BitSet(cells);
+        this.dirtyLocal = new BitSet(cells);
+        this.livingWitnesses = new BitSet(cells);
+        this.witnessedSquares = new BitSet(cells);
+        this.offEdgeGroups = new BitSet[GROUPS];
+        for (int i=0; i < GROUPS; i++) {
+            offEdgeGroups[i] = new BitSet(cells);
+        }
+        this.offEdgeGroup = new int[cells];
+    }
+
+    /**
+     * Register moves which have been handed out to be played.
+     */
+    public void addSeeds(Action... actions) {
+        for (Action action: actions) {
+            seeds.add(action);
+        }
+    }
+
+    /**
+     * Bring the tracker up to date with the board.
+     * @return true if the changes were applied incrementally, false if the tracker had to be rebuilt
+     */
+    public boolean update() {
+
+        if (!built) {
+            rebuild();
+            return false;
+        }
+
+        changed = new ArrayList<>();
+
+        Deque<Integer> work = new ArrayDeque<>();
+        for (Location seed: seeds) {
+            // chords reveal the neighbours, so check them as well
+            int index = geometry.index(seed);
+            work.add(index);
+            forEachNeighbour(index, work::add);
+        }
+        seeds.clear();
+
+        while (!work.isEmpty()) {
+            int index = work.poll();
+            if (revealed[index]) {
+                continue;
+            }
+            Location l = geometry.getLocation(index);
+            int value = myGame.query(l);
+            if (value >= 0 && value <= 8) {
+                values[index] = value;
+                reveal(index);
+                changed.add(l);
+                // a zero opens all its neighbours
+                if (value == 0) {
+                    forEachNeighbour(index, work::add);
+                }
+            } else if (!flagged[index] && boardState.isConfirmedFlag(l)) {
+                flag(index);
+                changed.add(l);
+            }
+        }
+
+        // if we don't agree with the game then something else changed the board
+        if (width * height - revealedCount != myGame.getHidden() || flagCount != boardState.getConfirmedFlagCount()) {
+            rebuild();
+            return false;
+        }
+
+        if (!changed.isEmpty()) {
+            revision++;
+        }
+
+        // the witnesses near anything which has changed need to be looked at again
+        for (Location l: changed) {
+            markDirty(l, TRIVIAL_RADIUS, dirtyTrivial);
+            markDirty(l, LOCAL_RADIUS, dirtyLocal);
+        }
+
+        return true;
+    }
+
+    /**
+     * Take in a flag the solver has just placed, so the counts given for the rest of the analysis include it
+     * and the next update agrees with the board state's flag count.
+     */
+    public void setFlagConfirmed(Location l) {
+        int index = geometry.index(l);
+        if (!built || revealed[index] || flagged[index]) {
+            return;
+        }
+        flag(index);
+        revision++;
+        if (changed != null) {
+            changed.add(l);
+        }
+        markDirty(l, TRIVIAL_RADIUS, dirtyTrivial);
+        markDirty(l, LOCAL_RADIUS, dirtyLocal);
+    }
+
+    /**
+     * Rebuild the tracker from a scan of the whole board.
+     */
+    public void rebuild() {
+
+        seeds.clear();
+        changed = null;
+        revision++;
+
+        revealedCount = 0;
+        flagCount = 0;
+        livingWitnesses.clear();
+        witnessedSquares.clear();
+        for (BitSet group: offEdgeGroups) {
+            group.clear();
+        }
+        Arrays.fill(offEdgeGroup, -1);
+
+        // take the whole board in one pass, the values array doubles as the copy
+        BoardSnapshot.copy(myGame, values);
+        for (int index=0; index < geometry.getCells(); index++) {
+            Location l = geometry.getLocation(index);
+            int value = values[index];
+            revealed[index] = (value >= 0 && value <= 8);
+            flagged[index] = !revealed[index] && boardState.isConfirmedFlag(l);
+            values[index] = revealed[index] ? value : 0;
+            if (revealed[index]) {
+                revealedCount++;
+            } else if (flagged[index]) {
+                flagCount++;
+            }
+        }
+
+        for (int index=0; index < geometry.getCells(); index++) {
+            int unrevealed = 0;
+            int revealedNeighbours = 0;
+            int flags = 0;
+            for (int neighbour: geometry.getNeighbours(index)) {
+                if (revealed[neighbour]) {
+                    revealedNeighbours++;
+                } else if (flagged[neighbour]) {
+                    flags++;
+                } else {
+                    unrevealed++;
+                }
+            }
+            adjacentUnrevealed[index] = unrevealed;
+            adjacentRevealed[index] = revealedNeighbours;
+            adjacentFlags[index] = flags;
+            refresh(index);
+        }
+
+        // everything needs looking at after a rebuild
+        dirtyTrivial.set(0, geometry.getCells());
+        dirtyLocal.set(0, geometry.getCells());
+
+        built = true;
+    }
+
+    private void reveal(int index) {
+        boolean wasFlagged = flagged[index];
+        revealed[index] = true;
+        flagged[index] = false;
+        revealedCount++;
+        if (wasFlagged) {
+            flagCount--;
+        }
+        forEachNeighbour(index, neighbour -> {
+            adjacentRevealed[neighbour]++;
+            if (wasFlagged) {
+                adjacentFlags[neighbour]--;
+            } else {
+                adjacentUnrevealed[neighbour]--;
+            }
+            refresh(neighbour);
+        });
+        refresh(index);
+    }
+
+    private void flag(int index) {
+        flagged[index] = true;
+        flagCount++;
+        forEachNeighbour(index, neighbour -> {
+            adjacentUnrevealed[neighbour]--;
+            adjacentFlags[neighbour]++;
+            refresh(neighbour);
+        });
+        refresh(index);
+    }
+
+    private void refresh(int index) {
+        livingWitnesses.set(index, revealed[index] && adjacentUnrevealed[index] > 0);
+        boolean witnessed = !revealed[index] && !flagged[index] && adjacentRevealed[index] > 0;
+        witnessedSquares.set(index, witnessed);
+
+        int group = (!revealed[index] && !flagged[index] && !witnessed) ? adjacentUnrevealed[index] * 9 + adjacentFlags[index] : -1;
+        if (group != offEdgeGroup[index]) {
+            if (offEdgeGroup[index] != -1) {
+                offEdgeGroups[offEdgeGroup[index]].clear(index);
+            }
+            if (group != -1) {
+                offEdgeGroups[group].set(index);
+            }
+            offEdgeGroup[index] = group;
+        }
+    }
+
+    private void forEachNeighbour(int index, IntConsumer action) {
+        for (int neighbour: geometry.getNeighbours(index)) {
+            action.accept(neighbour);
+        }
+    }
+
+    private void markDirty(Location l, int radius, BitSet dirty) {
+        for (int x = Math.max(0, l.x - radius); x <= Math.min(width - 1, l.x + radius); x++) {
+            for (int y = Math.max(0, l.y - radius); y <= Math.min(height - 1, l.y + radius); y++) {
+                dirty.set(x * height + y);
+            }
+        }
+    }
+
+    /**
+     * @param local true for the worklist of local moves, false for trivial moves
+     * @return the living witnesses which have had something change near them since they were last cleaned, in board order
+     */
+    public List<Location> getDirtyWitnesses(boolean local) {
+        BitSet dirty = (BitSet) (local ? dirtyLocal : dirtyTrivial).clone();
+        dirty.and(livingWitnesses);
+
+        List<Location> result = new ArrayList<>(dirty.cardinality());
+        for (int index = dirty.nextSetBit(0); index >= 0; index = dirty.nextSetBit(index + 1)) {
+            result.add(geometry.getLocation(index));
+        }
+        return result;
+    }
+
+    /**
+     * The witness has been examined and had nothing to offer, it doesn't need looking at until something near it changes.
+     */
+    public void setClean(Location witness, boolean local) {
+        (local ? dirtyLocal : dirtyTrivial).clear(geometry.index(witness));
+    }
+
+    public int getValue(Location l) {
+        return values[geometry.index(l)];
+    }
+
+    public int countAdjacentUnrevealed(Location l) {
+        return adjacentUnrevealed[geometry.index(l)];
+    }
+
+    public int countAdjacentFlags(Location l) {
+        return adjacentFlags[geometry.index(l)];
+    }
+
+    /**
+     * @return the revealed tiles which still have unrevealed neighbours, in board order
+     */
+    public List<Location> getLivingWitnesses() {
+        List<Location> result = new ArrayList<>(livingWitnesses.cardinality());
+        for (int index = livingWitnesses.nextSetBit(0); index >= 0; index = livingWitnesses.nextSetBit(index + 1)) {
+            result.add(geometry.getLocation(index));
+        }
+        return result;
+    }
+
+    /**
+     * @return the unrevealed tiles next to a living witness, in board order
+     */
+    public Area getWitnessedArea() {
+        Set<Location> result = new LinkedHashSet<>();
+        for (int index = witnessedSquares.nextSetBit(0); index >= 0; index = witnessedSquares.nextSetBit(index + 1)) {
+            result.add(geometry.getLocation(index));
+        }
+        return new Area(result);
+    }
+
+    /**
+     * Squares off the edge with the same number of unrevealed and flagged neighbours are equally good guesses,
+     * so rather than every square this returns the first (in board order) from each group.
+     * @param skip squares which shouldn't be offered, e.g. those on the web being guessed against
+     * @return the first square not skipped from each group of unrevealed squares off the edge
+     */
+    public List<Location> getOffEdgeCandidates(Predicate<Location> skip) {
+        List<Location> result = new ArrayList<>();
+        for (BitSet group: offEdgeGroups) {
+            for (int index = group.nextSetBit(0); index >= 0; index = group.nextSetBit(index + 1)) {
+                if (!skip.test(geometry.getLocation(index))) {
+                    result.add(geometry.getLocation(index));
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    public boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * @return the locations which changed in the last update, or null if the tracker was rebuilt
+     */
+    public List<Location> getChanged() {
+        return changed;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public int getRevealedCount() {
+        return revealedCount;
+    }
+}
@@ -0,0 +1,245 @@
+package minesweeper.solver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Completed brute force deep analysis trees, shared by every solver in the JVM so endgames which come up again
+ * (in the same game or another one) don't have to be searched again.
+ *
+ * Trees are keyed by the canonical form of the position built by {@link ParallelBruteForceAnalysis}, which doesn't
+ * depend on where the position is on the board or which way round it is. The least recently used trees are dropped
+ * once the cache holds more than {@link #getCapacity()} positions, or to make room in the {@link BruteForceGovernor}'s
+ * budget, which the cached trees are charged to.
+ * A tree isn't changed once it is in the cache, a solver which needs to search further from it searches a copy.
+ *
+ * The cache can be saved to a file and loaded again so it carries over between runs.
+ */
+public class BruteForceCache {
+
+    private final static int FILE_MAGIC = 0x42464443;   // "BFDC"
+    private final static int FILE_VERSION = 1;
+
+    private final static long DEFAULT_CAPACITY = 2000000;
+
+    /**
+     * The canonical layout of the squares and the canonical order of the solutions
+     */
+    static final class PositionKey {
+        private final int[] geometry;
+        private final byte[] solutions;
+        private final int hash;
+
+        PositionKey(int[] geometry, byte[] solutions) {
+            this.geometry = geometry;
+            this.solutions = solutions;
+            this.hash = 31 * Arrays.hashCode(geometry) + Arrays.hashCode(solutions);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PositionKey)) {
+                return false;
+            }
+            PositionKey other = (PositionKey) obj;
+            return this.hash == other.hash && Arrays.equals(this.geometry, other.geometry) && Arrays.equals(this.solutions, other.solutions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        // what a tree of this many positions is charged to the governor, the solutions are held in the key
+        long getBytes(int positions) {
+            int squares = geometry.length / 2;
+            int solutionCount = (squares == 0) ? 0 : solutions.length / squares;
+            return BruteForceGovernor.positionBytes(positions, solutionCount) + solutions.length + geometry.length * 4L;
+        }
+    }
+
+    // access ordered, so the eldest entry is the least recently used
+    private final static LinkedHashMap<PositionKey, Map<BitSet, ParallelBruteForceAnalysis.Node>> trees = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static long capacity = DEFAULT_CAPACITY;
+    private static long positions = 0;
+
+    private final static AtomicLong hits = new AtomicLong();
+    private final static AtomicLong misses = new AtomicLong();
+
+    static synchronized Map<BitSet, ParallelBruteForceAnalysis.Node> get(PositionKey key) {
+        Map<BitSet, ParallelBruteForceAnalysis.Node> result = trees.get(key);
+        if (result == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * @return false if there was no room for the tree in the governor's budget, even with the other trees dropped
+     */
+    static synchronized boolean put(PositionKey key, Map<BitSet, ParallelBruteForceAnalysis.Node> tree) {
+        remove(key);
+
+        // make room in the budget by dropping the least recently used trees
+        long bytes = key.getBytes(tree.size());
+        Iterator<Map.Entry<PositionKey, Map<BitSet, ParallelBruteForceAnalysis.Node>>> iterator = trees.entrySet().iterator();
+        while (!BruteForceGovernor.tryReserve(bytes)) {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            Map.Entry<PositionKey, Map<BitSet, ParallelBruteForceAnalysis.Node>> eldest = iterator.next();
+            dropped(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+        }
+
+        trees.put(key, tree);
+        positions = positions + tree.size();
+        evict();
+        return true;
+    }
+
+    private static void remove(PositionKey key) {
+        Map<BitSet, ParallelBruteForceAnalysis.Node> previous = trees.remove(key);
+        if (previous != null) {
+            dropped(key, previous);
+        }
+    }
+
+    private static void dropped(PositionKey key, Map<BitSet, ParallelBruteForceAnalysis.Node> tree) {
+        positions = positions - tree.size();
+        BruteForceGovernor.release(key.getBytes(tree.size()));
+    }
+
+    // drop the least recently used trees until we are within capacity, always keeping the newest
+    private static void evict() {
+        Iterator<Map.Entry<PositionKey, Map<BitSet, ParallelBruteForceAnalysis.Node>>> iterator = trees.entrySet().iterator();
+        while (positions > capacity && trees.size() > 1) {
+            Map.Entry<PositionKey, Map<BitSet, ParallelBruteForceAnalysis.Node>> eldest = iterator.next();
+            dropped(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @param capacity the number of positions, over all the trees, the cache can hold
+     */
+    public static synchronized void setCapacity(long capacity) {
+        BruteForceCache.capacity = capacity;
+        evict();
+    }
+
+    public static synchronized long getCapacity() {
+        return capacity;
+    }
+
+    public static synchronized int size() {
+        return trees.size();
+    }
+
+    public static synchronized long getPositions() {
+        return positions;
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static synchronized void clear() {
+        for (Map.Entry<PositionKey, Map<BitSet, ParallelBruteForceAnalysis.Node>> entry: trees.entrySet()) {
+            dropped(entry.getKey(), entry.getValue());
+        }
+        trees.clear();
+    }
+
+    /**
+     * Write the cached trees to the file, least recently used first
+     */
+    public static synchronized void save(File file) throws IOException {
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(trees.size());
+
+            for (Map.Entry<PositionKey, Map<BitSet, ParallelBruteForceAnalysis.Node>> entry: trees.entrySet()) {
+                PositionKey key = entry.getKey();
+                out.writeInt(key.geometry.length);
+                for (int value: key.geometry) {
+                    out.writeInt(value);
+                }
+                out.writeInt(key.solutions.length);
+                out.write(key.solutions);
+
+                Map<BitSet, ParallelBruteForceAnalysis.Node> tree = entry.getValue();
+                out.writeInt(tree.size());
+                for (Map.Entry<BitSet, ParallelBruteForceAnalysis.Node> node: tree.entrySet()) {
+                    long[] bits = node.getKey().toLongArray();
+                    out.writeInt(bits.length);
+                    for (long bit: bits) {
+                        out.writeLong(bit);
+                    }
+                    out.writeInt(node.getValue().bestMove);
+                    out.writeInt(node.getValue().winningLines);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Add the trees saved in the file to the cache, those there is no room for in the governor's budget are skipped
+     */
+    public static synchronized void load(File file) throws IOException {
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new IOException("File " + file + " is not a brute force cache");
+            }
+
+            int count = in.readInt();
+            for (int i=0; i < count; i++) {
+                int[] geometry = new int[in.readInt()];
+                for (int j=0; j < geometry.length; j++) {
+                    geometry[j] = in.readInt();
+                }
+                byte[] solutions = new byte[in.readInt()];
+                in.readFully(solutions);
+
+                int nodes = in.readInt();
+                Map<BitSet, ParallelBruteForceAnalysis.Node> tree = new ConcurrentHashMap<>(nodes);
+                for (int j=0; j < nodes; j++) {
+                    long[] bits = new long[in.readInt()];
+                    for (int k=0; k < bits.length; k++) {
+                        bits[k] = in.readLong();
+                    }
+                    int bestMove = in.readInt();
+                    int winningLines = in.readInt();
+                    tree.put(BitSet.valueOf(bits), new ParallelBruteForceAnalysis.Node(bestMove, winningLines));
+                }
+
+                put(new PositionKey(geometry, solutions), tree);
+            }
+        }
+
+    }
+}
@@ -0,0 +1,153 @@
+package minesweeper.solver;
+
+/**
+ * A budget for the memory used by brute force analysis, shared by every solver in the JVM.
+ *
+ * Each solver reserves an estimate of what it is about to use before crunching solutions or expanding an analysis
+ * tree, and releases it when it is done. If the budget can't cover the reservation the solver waits a short while
+ * for other solvers to finish and, failing that, plays the probability engine's move instead of the brute force one.
+ * Trees kept once the analysis has finished, by a solver walking them or by the {@link BruteForceCache}, stay charged
+ * to the budget until they are dropped.
+ *
+ * The sizes are estimates, they only need to be good enough to keep many workers from all building large trees at once.
+ */
+public class BruteForceGovernor {
+
+    // rough sizes of the things being stored
+    final static long SOLUTION_OVERHEAD = 32;    // array header and reference for each stored solution
+    final static long POSITION_OVERHEAD = 96;    // map entry, key object and node for each position in a tree
+
+    // how long to wait for other solvers to release memory before giving up
+    final static long QUEUE_WAIT_MILLIS = 100;
+
+    private final static Object lock = new Object();
+
+    private static long budget = Runtime.getRuntime().maxMemory() / 4;
+    private static long used = 0;
+    private static long peak = 0;
+    private static long granted = 0;
+    private static long queued = 0;
+    private static long refused = 0;
+
+    /**
+     * @return the estimated size of storing the solutions for the squares
+     */
+    public static long solutionBytes(long solutions, int squares) {
+        return solutions * (squares + SOLUTION_OVERHEAD);
+    }
+
+    /**
+     * @return the estimated size of the positions in a tree over this many solutions
+     */
+    public static long positionBytes(long positions, int solutions) {
+        return positions * (POSITION_OVERHEAD + 8L * ((solutions + 63) / 64));
+    }
+
+    /**
+     * Reserve memory from the budget, waiting briefly for it to be released if there isn't enough
+     * @return true if the memory was reserved, it must then be released with {@link #release(long)}
+     */
+    public static boolean reserve(long bytes) {
+
+        synchronized (lock) {
+            if (used + bytes > budget) {
+                queued++;
+                long giveUp = System.currentTimeMillis() + QUEUE_WAIT_MILLIS;
+                long wait = QUEUE_WAIT_MILLIS;
+                while (used + bytes > budget && wait > 0) {
+                    try {
+                        lock.wait(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    wait = giveUp - System.currentTimeMillis();
+                }
+                if (used + bytes > budget) {
+                    refused++;
+                    return false;
+                }
+            }
+
+            used = used + bytes;
+            peak = Math.max(peak, used);
+            granted++;
+            return true;
+        }
+
+    }
+
+    /**
+     * Reserve memory from the budget only if there is room for it now
+     * @return true if the memory was reserved, it must then be released with {@link #release(long)}
+     */
+    public static boolean tryReserve(long bytes) {
+        synchronized (lock) {
+            if (used + bytes > budget) {
+                return false;
+            }
+            used = used + bytes;
+            peak = Math.max(peak, used);
+            granted++;
+            return true;
+        }
+    }
+
+    /**
+     * Charge memory which is already in use to the budget, even if that takes it over. Release it with {@link #release(long)}
+     */
+    public static void charge(long bytes) {
+        synchronized (lock) {
+            used = used + bytes;
+            peak = Math.max(peak, used);
+        }
+    }
+
+    public static void release(long bytes) {
+        synchronized (lock) {
+            used = Math.max(0, used - bytes);
+            lock.notifyAll();
+        }
+    }
+
+    public static void setBudget(long bytes) {
+        synchronized (lock) {
+            budget = bytes;
+            lock.notifyAll();
+        }
+    }
+
+    public static long getBudget() {
+        synchronized (lock) {
+            return budget;
+        }
+    }
+
+    public static long getUsed() {
+        synchronized (lock) {
+            return used;
+        }
+    }
+
+    public static long getPeak() {
+        synchronized (lock) {
+            return peak;
+        }
+    }
+
+    public static long getRefused() {
+        synchronized (lock) {
+            return refused;
+        }
+    }
+
+    /**
+     * @return a one line summary of the budget, for status reports
+     */
+    public static String getStatus() {
+        synchronized (lock) {
+            return "Brute force memory " + (used >> 20) + "MB of " + (budget >> 20) + "MB (peak " + (peak >> 20) + "MB), "
+                    + granted + " reservations, " + queued + " queued, " + refused + " refused";
+        }
+    }
+}
@@ -14,13 +14,25 @@ import minesweeper.solver.utility.Logger;
 import minesweeper.structure.Action;
 import minesweeper.structure.Area;
 import minesweeper.structure.Location;
+import minesweeper.util.BoardGeometry;
+import minesweeper.util.BoardSnapshot;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class ExtendedSolver extends Solver {
     // used to hold valid moves which are about to be passed out of the solver
@@ -77,6 +89,9 @@ public class ExtendedSolver extends Solver {
     //final static BigDecimal OFF_EDGE_TOLERENCE = BigDecimal.ONE.subtract(PROGRESS_VALUE); // consider off edge tiles which if they are above the threshold of the best on edge tile
 
     final static BigDecimal PROB_ENGINE_TOLERENCE = BigDecimal.ONE.subtract(PROGRESS_VALUE).max(PROB_ENGINE_HARD_TOLERENCE);
+
+    // the off edge cut-off only needs comparing, so it is done with primitives
+    final static double OFF_EDGE_CUTOFF_TOLERENCE = Solver.OFF_EDGE_TOLERENCE.doubleValue();
     //final static BigDecimal PROB_ENGINE_TOLERENCE = new BigDecimal("0.85");  // for experimental tiebreak
 
     // won't play the book opening on start if false
@@ -89,6 +104,19 @@ public class ExtendedSolver extends Solver {
 
     final static int CORES = Runtime.getRuntime().availableProcessors();
 
+    /**
+     * If there are at least this many candidate tiles to evaluate then the probability engine runs for each outcome are done in parallel
+     */
+    final static int PARALLEL_CANDIDATE_MINIMUM = 4;
+
+    // shared by all the solvers in the JVM so bulk runs don't start a pool per game
+    final static ForkJoinPool ANALYSIS_POOL = new ForkJoinPool(CORES);
+
+    /**
+     * The brute force analysis tree is assumed to hold this many positions per solution when reserving memory for it
+     */
+    final static int TREE_POSITIONS_PER_SOLUTION = 8;
+
 
     // a binomial coefficient generator which allows up to (choose n from 1000000) and builds a cache of everything up to (choose n from 100)
     static Binomial binomialEngine = new Binomial(1000000, 500);
@@ -102,13 +130,26 @@ public class ExtendedSolver extends Solver {
 
     // a class which holds the solves current view of the board
     private final BoardState boardState;
+
+    // neighbours and interned locations for this size of board, shared with every other solver playing it
+    private final BoardGeometry geometry;
+
+    // keeps the living witnesses and witnessed squares up to date from the moves played since the last analysis
+    private final BoardTracker boardTracker;
+    private WitnessWeb trackedEdge;
+    private int trackedEdgeRevision;
     private ProbabilityEngineModel pe;
     private BruteForce bf;
 
     private BruteForceAnalysisModel bruteForceAnalysis;
+
+    // the parallel analysis tree being walked, it is tried before the brute force analysis and walked the same way
+    private ParallelBruteForceAnalysis parallelAnalysis;
     private LocationEvaluator evaluateLocations;
 
-    private BigDecimal offEdgeProb;
+    // the probability off the edge is safe, the BigDecimal is only built when an action needs it
+    private double offEdgeProb;
+    private BigDecimal bigOffEdgeProb;
 
     private List<Location> bfdaStartLocations = null;
 
@@ -116,16 +157,48 @@ public class ExtendedSolver extends Solver {
     private Area allWitnessedSquares;
     private Area deadLocations;
 
+    // results of the hypothetical positions evaluated during the current analysis
+    private final AnalysisMemo memo = new AnalysisMemo();
 
-    // work areas
-    private boolean[] workRestNotFlags;
-    private boolean[] workRestNotClear;
+
+    // work areas, one per thread so isolated edges can be crunched at the same time
+    private static class WorkArea {
+        private boolean[] restNotFlags;
+        private boolean[] restNotClear;
+        private SolutionSet solutions;   // the solutions being passed to the brute force analysis, if there is one
+    }
+    private final ThreadLocal<WorkArea> workArea = ThreadLocal.withInitial(WorkArea::new);
+
+    // the solutions each brute force analysis was given during this analysis
+    private final Map<BruteForceAnalysisModel, SolutionSet> crunchedSolutions = new ConcurrentHashMap<>();
+
+    // completed analyses of isolated edges which haven't been played yet, they stay valid until the edge is played
+    private final Map<SolutionSet, BruteForceAnalysisModel> isolatedAnalyses = new ConcurrentHashMap<>();
+
+    // solutions whose brute force analysis, or parallel analysis, ran out of steps, the same solutions would run out again
+    private final Set<SolutionSet> abandonedAnalyses = ConcurrentHashMap.newKeySet();
+    private final Set<SolutionSet> abandonedParallelAnalyses = ConcurrentHashMap.newKeySet();
+
+    // memory reserved from the brute force governor during this analysis, settled when the analysis finishes
+    private final AtomicLong reservedBytes = new AtomicLong();
+
+    // memory charged to the brute force governor for the trees and solutions kept between analyses
+    private long heldBytes = 0;
+
+    // isolated edges the parallel analysis solved, or found in the brute force cache, during this analysis
+    private final Map<BruteForceAnalysisModel, ParallelBruteForceAnalysis> solvedEndgames = new ConcurrentHashMap<>();
+
+    // the log-space engine only pays for itself on turns with certain clears, after a guess turn it is skipped until the exact engine finds some again
+    private boolean logEngineFirst = true;
 
 
     private Location overriddenStartLocation;
 
     private final boolean interactive;
 
+    // when not interactive nobody is watching, so the analysis doesn't build any messages or log below warning level
+    private final boolean quiet;
+
     private FinalMoves answer;
 
     // used to indicate that the solver shouldn't bother placing flags on the board
@@ -142,6 +215,10 @@ public class ExtendedSolver extends Solver {
     // won't play the book opening on start if false
     private boolean playOpening = true;
 
+    // hand out one move per call, keeping the other certain moves found to hand out later without analysing again
+    private boolean oneMoveAtATime = false;
+    private final List<Action> moveQueue = new ArrayList<>();
+
     // when set the solver will gather detailed information about the possible values each tile can have
     // intended for use with the Minesweeper Explorer. Can have significant performance impact.
     //private boolean gatherDetailedInformation = true;
@@ -157,36 +234,43 @@ public class ExtendedSolver extends Solver {
         this.coachDisplay = new CoachSilent();
         this.myGame = myGame;
         this.interactive = interactive;
+        this.quiet = !interactive;
 
         this.overriddenStartLocation = preferences.getStartLocation();
 
+        // the board state is processed at the start of each analysis, no need to do it here as well
         this.boardState = new BoardState(this);
-        boardState.process();
-
-        logger.log(Logger.Level.INFO, "Running with %d Cores", CORES);
-        logger.log(Logger.Level.INFO, "Max memory available to JVM %d", Runtime.getRuntime().maxMemory());
-        logger.log(Logger.Level.INFO, "Free Memory available to JVM %d", Runtime.getRuntime().freeMemory());
-        logger.log(Logger.Level.INFO, "Solving game %s", myGame.showGameKey());
-
-        List<Location> witnesses = new ArrayList<>(500);
-        for (int x=0; x < myGame.getWidth(); x++) {
-            for (int y=0; y < myGame.getHeight(); y++) {
-                Location l = new Location(x,y);
-                if (myGame.query(l) != GameStateModel.FLAG && myGame.query(l) != GameStateModel.HIDDEN) {
-                    witnesses.add(l);
+        this.geometry = BoardGeometry.of(myGame.getWidth(), myGame.getHeight());
+        this.boardTracker = new BoardTracker(myGame, boardState);
+
+        if (!quiet) {
+            logger.log(Logger.Level.INFO, "Running with %d Cores", CORES);
+            logger.log(Logger.Level.INFO, "Max memory available to JVM %d", Runtime.getRuntime().maxMemory());
+            logger.log(Logger.Level.INFO, "Free Memory available to JVM %d", Runtime.getRuntime().freeMemory());
+            logger.log(Logger.Level.INFO, "Solving game %s", myGame.showGameKey());
+
+            // the witnesses are only counted for the log, so don't scan the board when nothing will be shown
+            BoardSnapshot snapshot = new BoardSnapshot(myGame);
+            int witnesses = 0;
+            for (int index=0; index < geometry.getCells(); index++) {
+                if (snapshot.query(index) != GameStateModel.FLAG && snapshot.query(index) != GameStateModel.HIDDEN) {
+                    witnesses++;
                 }
             }
+            logger.log(Logger.Level.DEBUG, "Found %d witnesses already in the game", witnesses);
         }
-        logger.log(Logger.Level.DEBUG, "Found %d witnesses already in the game", witnesses.size());
     }
 
     @Override
     public void start() {
 
-        LoopCheck check = new LoopCheck();
-
-        Thread checkThread  = new Thread(check);
-        checkThread.start();
+        // the loop check only reports to the console, so there is no point starting a thread for it when quiet
+        LoopCheck check = null;
+        if (!quiet) {
+            check = new LoopCheck();
+            Thread checkThread  = new Thread(check);
+            checkThread.start();
+        }
 
         int loopSafe = 0;
 
@@ -196,11 +280,15 @@ public class ExtendedSolver extends Solver {
                 this.logger.log(Logger.Level.WARN, "LOOPSAFE check!! - exiting the processing after %d iterations", loopSafe);
                 break;
             }
-            logger.log(Logger.Level.DEBUG, "There are no moves provided ( %d have been supressed) - rerunning the solver", answer.suppressedFlags );
+            if (!quiet) {
+                logger.log(Logger.Level.DEBUG, "There are no moves provided ( %d have been supressed) - rerunning the solver", answer.suppressedFlags );
+            }
             answer = newProcess();
         }
 
-        check.finishedOkay();
+        if (check != null) {
+            check.finishedOkay();
+        }
 
     }
 
@@ -215,12 +303,43 @@ public class ExtendedSolver extends Solver {
     // end of Asynchronous methods
 
     public FinalMoves newProcess() {
-        FinalMoves fm = doNewProcess();
+
+        // certain moves stay certain, so if there is one left from the last analysis play that
+        if (oneMoveAtATime) {
+            Action queued = takeQueuedMove();
+            if (queued != null) {
+                boardTracker.addSeeds(queued);
+                return new FinalMoves(queued);
+            }
+        }
+
+        FinalMoves fm;
+        try {
+            fm = doNewProcess();
+        } finally {
+            crunchedSolutions.clear();
+            settleReservations();
+        }
+
+        if (oneMoveAtATime && fm.result.length > 1) {
+            fm = queueMoves(fm);
+        }
+
+        // the moves handed out are where the board will change before the next analysis
+        boardTracker.addSeeds(fm.result);
 
         if (fm.result.length > 0) {
-            newLine("---------- Recommended Move ----------");
-            newLine(fm.result[0].toString());
-            newLine("----------  Analysis Ended -----------");
+            if (!quiet) {
+                newLine("---------- Recommended Move ----------");
+                newLine(fm.result[0].toString());
+                newLine("----------  Analysis Ended -----------");
+            }
+        }
+
+        if (memo.getOutcomeHits() + memo.getCounterHits() > 0) {
+            if (!quiet) {
+                this.logger.log(Logger.Level.DEBUG, "Reused %d probability engine outcomes and %d solution counts", memo.getOutcomeHits(), memo.getCounterHits());
+            }
         }
 
         int testMoveBalance = boardState.getTestMoveBalance();
@@ -232,9 +351,79 @@ public class ExtendedSolver extends Solver {
         return fm;
     }
 
+    /**
+     * When set the solver returns one move at a time. The other certain moves found by an analysis are queued and
+     * handed out by the following calls, dropping any which have been played in the meantime, before analysing again.
+     */
+    public void setOneMoveAtATime(boolean oneMoveAtATime) {
+        this.oneMoveAtATime = oneMoveAtATime;
+        if (!oneMoveAtATime) {
+            moveQueue.clear();
+        }
+    }
+
+    /**
+     * Choose which of the queued moves to play next. The queue is never empty.
+     */
+    protected Action selectQueuedMove(List<Action> queue) {
+        return queue.get(0);
+    }
+
+    // keep the certain moves for later and hand out the first of them
+    private FinalMoves queueMoves(FinalMoves fm) {
+
+        for (Action action: fm.result) {
+            if (action.isCertainty()) {
+                moveQueue.add(action);
+            }
+        }
+
+        // nothing which can be kept, so the moves are handed out as they are
+        if (moveQueue.isEmpty()) {
+            return fm;
+        }
+
+        return new FinalMoves(takeQueuedMove());
+    }
+
+    private Action takeQueuedMove() {
+
+        if (myGame.getGameState() == GameStateModel.LOST || myGame.getGameState() == GameStateModel.WON) {
+            moveQueue.clear();
+            return null;
+        }
+
+        moveQueue.removeIf(this::alreadyPlayed);
+        if (moveQueue.isEmpty()) {
+            return null;
+        }
+
+        Action result = selectQueuedMove(moveQueue);
+        moveQueue.remove(result);
+        return result;
+    }
+
+    // the cells revealed since the move was queued may have already done what it would do
+    private boolean alreadyPlayed(Action action) {
+
+        if (action.getAction() != Action.CLEARALL) {
+            return myGame.query(action) != GameStateModel.HIDDEN;
+        }
+
+        // a chord has nothing left to do once all its neighbours are revealed or flagged
+        for (int neighbour: geometry.getNeighbours(geometry.index(action))) {
+            if (myGame.query(geometry.getLocation(neighbour)) == GameStateModel.HIDDEN) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     protected FinalMoves doNewProcess() {
 
-        this.logger.log(Logger.Level.INFO, "--- Starting Analysis ---");
+        if (!quiet) {
+            this.logger.log(Logger.Level.INFO, "--- Starting Analysis ---");
+        }
 
         Action[] result = null;
 
@@ -247,23 +436,36 @@ public class ExtendedSolver extends Solver {
         bf = null;
         evaluateLocations = null;
         deadLocations = null;
+        memo.clear();
+        crunchedSolutions.clear();
+        solvedEndgames.clear();
 
         if (myGame.getGameState() == GameStateModel.LOST) {
-            topLine("The game has been lost, so no further analysis is possible");
+            if (!quiet) {
+                topLine("The game has been lost, so no further analysis is possible");
+            }
             if (myGame.supports3BV()) {
-                newLine("3BV value " + myGame.get3BV());
-                newLine("Action Count " + myGame.getActionCount());
+                if (!quiet) {
+                    newLine("3BV value " + myGame.get3BV());
+                    newLine("Action Count " + myGame.getActionCount());
+                }
             }
             return fm;
         }
 
         if (myGame.getGameState() == GameStateModel.WON) {
-            topLine("The game has been won, so no further analysis is required");
+            if (!quiet) {
+                topLine("The game has been won, so no further analysis is required");
+            }
             if (myGame.supports3BV()) {
-                newLine("3BV value " + myGame.get3BV());
-                newLine("Action Count " + myGame.getActionCount());
+                if (!quiet) {
+                    newLine("3BV value " + myGame.get3BV());
+                    newLine("Action Count " + myGame.getActionCount());
+                }
                 double eff = ((10000 * myGame.get3BV()) / myGame.getActionCount()) / 100d;
-                newLine("Efficiency is " + eff + "%");
+                if (!quiet) {
+                    newLine("Efficiency is " + eff + "%");
+                }
             }
             return fm;
         }
@@ -275,18 +477,20 @@ public class ExtendedSolver extends Solver {
         if (myGame.getGameState() == GameStateModel.NOT_STARTED && playOpening) {
 
             if (myGame.safeOpening()) {
-                offEdgeProb = BigDecimal.ONE;
+                setOffEdgeProb(BigDecimal.ONE);
             } else {
-                offEdgeProb = BigDecimal.ONE.subtract(BigDecimal.valueOf(myGame.getMinesLeft()).divide(BigDecimal.valueOf(myGame.getHidden()), Solver.DP, RoundingMode.HALF_UP));
+                setOffEdgeProb(1d - (double) myGame.getMinesLeft() / (double) myGame.getHidden());
             }
 
             fm = guess(null);
 
-            newLine("This is the first move");
-            newLine("Note: if you aren't accepting guesses nothing will happen!");
-            newLine("---------- Recommended Move ----------");
-            newLine(fm.result[0].toString());
-            newLine("----------  Analysis Ended -----------");
+            if (!quiet) {
+                newLine("This is the first move");
+                newLine("Note: if you aren't accepting guesses nothing will happen!");
+                newLine("---------- Recommended Move ----------");
+                newLine(fm.result[0].toString());
+                newLine("----------  Analysis Ended -----------");
+            }
 
             return fm;
         }
@@ -298,20 +502,26 @@ public class ExtendedSolver extends Solver {
                 bruteForceAnalysis = null;
             } else {
                 if (expectedMove != null && !boardState.isRevealed(expectedMove)) {  // we haven't played the recommended move - so the analysis is probably useless
-                    this.logger.log(Logger.Level.INFO, "The expected Brute Force Analysis move %s wasn't played", expectedMove );
+                    if (!quiet) {
+                        this.logger.log(Logger.Level.INFO, "The expected Brute Force Analysis move %s wasn't played", expectedMove );
+                    }
                     bruteForceAnalysis = null;
                 } else {
                     if (myGame.query(expectedMove) != 0) {
                         Action move = bruteForceAnalysis.getNextMove(boardState);
                         if (move != null) {
-                            this.logger.log(Logger.Level.INFO, "Brute Force Deep Analysis move is %s", move);
-                            newLine("-------- Brute Force Deep Analysis Tree --------");
-                            newLine(move.toString());
-                            newLine("--------  Brute Force Deep Analysis Tree---------");
+                            if (!quiet) {
+                                this.logger.log(Logger.Level.INFO, "Brute Force Deep Analysis move is %s", move);
+                                newLine("-------- Brute Force Deep Analysis Tree --------");
+                                newLine(move.toString());
+                                newLine("--------  Brute Force Deep Analysis Tree---------");
+                            }
                             return new FinalMoves(move);
                         }
                     } else {
-                        this.logger.log(Logger.Level.INFO, "After a zero the board can be in an unexpected state, so cancelling Brute Force Analysis moves");
+                        if (!quiet) {
+                            this.logger.log(Logger.Level.INFO, "After a zero the board can be in an unexpected state, so cancelling Brute Force Analysis moves");
+                        }
                         bruteForceAnalysis = null;
                     }
 
@@ -319,18 +529,45 @@ public class ExtendedSolver extends Solver {
             }
         }
 
+        // are we walking down a parallel brute force analysis tree?
+        if (parallelAnalysis != null) {
+            Location expectedMove = parallelAnalysis.getExpectedMove();
+            if (expectedMove == null || !boardState.isRevealed(expectedMove) || myGame.query(expectedMove) == 0) {  // not played, or a zero has changed the board
+                parallelAnalysis = null;
+            } else {
+                Action move = parallelAnalysis.getNextMove(boardState);
+                if (move != null) {
+                    if (!quiet) {
+                        this.logger.log(Logger.Level.INFO, "Parallel Brute Force Analysis move is %s", move);
+                    }
+                    return new FinalMoves(move);
+                }
+                parallelAnalysis = null;
+            }
+        }
+
         int unrevealed = boardState.getTotalUnrevealedCount();
 
-        allWitnesses = boardState.getAllLivingWitnesses();
-        allWitnessedSquares = boardState.getUnrevealedArea(allWitnesses);
+        // apply the changes since the last analysis rather than scanning the whole board
+        if (!boardTracker.update()) {
+            if (!quiet) {
+                this.logger.log(Logger.Level.DEBUG, "Board tracker has been rebuilt from the whole board");
+            }
+        }
+        allWitnesses = boardTracker.getLivingWitnesses();
+        allWitnessedSquares = boardTracker.getWitnessedArea();
 
 
-        newLine("----------- Game Situation -----------");
-        newLine("There are " + allWitnesses.size() + " witness(es)");
-        newLine("There are " + allWitnessedSquares.size() + " square(s) witnessed, out of " + unrevealed);
+        if (!quiet) {
+            newLine("----------- Game Situation -----------");
+            newLine("There are " + allWitnesses.size() + " witness(es)");
+            newLine("There are " + allWitnessedSquares.size() + " square(s) witnessed, out of " + unrevealed);
+        }
 
         if (unrevealed == 0) {
-            newLine("Nothing to analyse!");
+            if (!quiet) {
+                newLine("Nothing to analyse!");
+            }
             //return fm;
         }
 
@@ -339,13 +576,19 @@ public class ExtendedSolver extends Solver {
             //newLine("----------  Flag Analysis -----------");
             if (boardState.getConfirmedFlagCount() == boardState.getTotalFlagCount()) {
                 coachDisplay.setOkay();
-                newLine("All " + boardState.getTotalFlagCount() + " flags have been confirmed as correct");
+                if (!quiet) {
+                    newLine("All " + boardState.getTotalFlagCount() + " flags have been confirmed as correct");
+                }
             } else {
-                newLine((boardState.getTotalFlagCount() - boardState.getConfirmedFlagCount()) + " flags can not be confirmed as correct");
+                if (!quiet) {
+                    newLine((boardState.getTotalFlagCount() - boardState.getConfirmedFlagCount()) + " flags can not be confirmed as correct");
+                }
                 if (boardState.validateData()) {
                     coachDisplay.setWarn();
                 } else {
-                    newLine("At least 1 flag is definitely wrong!");
+                    if (!quiet) {
+                        newLine("At least 1 flag is definitely wrong!");
+                    }
                     coachDisplay.setError();
                 }
             }
@@ -353,14 +596,22 @@ public class ExtendedSolver extends Solver {
             coachDisplay.setOkay();
         }
 
-        // Build a web of all the witnesses still useful and all the un-revealed tiles adjacent to them
-        WitnessWeb wholeEdge = new WitnessWeb(boardState, allWitnesses, allWitnessedSquares.getLocations());
+        // Build a web of all the witnesses still useful and all the un-revealed tiles adjacent to them, unless nothing has changed since the last one
+        WitnessWeb wholeEdge;
+        if (trackedEdge != null && trackedEdgeRevision == boardTracker.getRevision()) {
+            wholeEdge = trackedEdge;
+        } else {
+            wholeEdge = new WitnessWeb(boardState, allWitnesses, allWitnessedSquares.getLocations());
+            trackedEdge = wholeEdge;
+            trackedEdgeRevision = boardTracker.getRevision();
+        }
 
-        int obvious = findTrivialActions(wholeEdge.getPrunedWitnesses());
+        // only the witnesses near something which has changed can have new moves to offer
+        int obvious = findTrivialActions(boardTracker.getDirtyWitnesses(false));
 
         long time2 = System.currentTimeMillis();
 
-        int lessObvious = findLocalActions(wholeEdge.getPrunedWitnesses());
+        int lessObvious = findLocalActions(boardTracker.getDirtyWitnesses(true));
 
         long time3 = System.currentTimeMillis();
 
@@ -369,11 +620,15 @@ public class ExtendedSolver extends Solver {
         int displayObvious = obvious + boardState.getUnplayedMoves(MoveMethod.TRIVIAL);
         int displayLessObvious = lessObvious + boardState.getUnplayedMoves(MoveMethod.LOCAL);
 
-        newLine("----------- Basic Analysis -----------");
-        newLine("There are " + displayObvious + " trivial moves found in " + (time2 - time1) + " milliseconds");
-        newLine("There are " + displayLessObvious + " locally certain moves found in " + (time3 - time2) + " milliseconds");
+        if (!quiet) {
+            newLine("----------- Basic Analysis -----------");
+            newLine("There are " + displayObvious + " trivial moves found in " + (time2 - time1) + " milliseconds");
+            newLine("There are " + displayLessObvious + " locally certain moves found in " + (time3 - time2) + " milliseconds");
+        }
 
-        this.logger.log(Logger.Level.INFO, "There are %d trivial / locally discoverable certain moves", (displayObvious + displayLessObvious));
+        if (!quiet) {
+            this.logger.log(Logger.Level.INFO, "There are %d trivial / locally discoverable certain moves", (displayObvious + displayLessObvious));
+        }
 
         if (playChords) {
             EfficiencyHelper eff = new EfficiencyHelper(boardState, wholeEdge, boardState.getActions());
@@ -395,8 +650,10 @@ public class ExtendedSolver extends Solver {
         if (obvious + lessObvious == 0 && !fm.moveFound && preferences.do5050Check()) {
         	findFifty = findFiftyFifty(wholeEdge);
         	if (findFifty.moveFound) {
-        		newLine("--------- Unavoidable Guess ---------");
-        		newLine("An unavoidable guess has been found - playing now to save time");
+        		if (!quiet) {
+            		newLine("--------- Unavoidable Guess ---------");
+            		newLine("An unavoidable guess has been found - playing now to save time");
+        		}
         		fm = findFifty;
         		display("***** Fifty Fifty " + myGame.showGameKey() +  ": " + fm.result[0].asString() );
         	}
@@ -421,28 +678,71 @@ public class ExtendedSolver extends Solver {
         // find (some) dead locations on the board - these can be ignored when looking for a good guess
         deadLocations = Area.EMPTY_AREA;
 
-        this.logger.log(Logger.Level.INFO, "----- Starting probability engine -----");
+        if (!quiet) {
+            this.logger.log(Logger.Level.INFO, "----- Starting probability engine -----");
+        }
 
+        // the floating point engine is much cheaper and decides certainty exactly, if it finds certain clears the exact engine isn't needed
+        if (logEngineFirst) {
+            LogProbabilityEngine lpe = LogProbabilityEngine.fromBoard(boardState, wholeEdge.getPrunedWitnesses(), allWitnessedSquares.getLocations(), unrevealed, minesLeft);
+            lpe.setPool(ANALYSIS_POOL);
+            lpe.process();
+            if (lpe.isComplete() && !lpe.getCertainClears().isEmpty()) {
+                if (!quiet) {
+                    this.logger.log(Logger.Level.INFO, "Log-space probability engine found %d clears and %d mines in %d milliseconds",
+                            lpe.getCertainClears().size(), lpe.getCertainMines().size(), lpe.getDuration());
+                }
+
+                for (Location loc: lpe.getCertainClears()) {
+                    recordAction(new Action(loc, Action.CLEAR, MoveMethod.PROBABILITY_ENGINE, "", BigDecimal.ONE));
+                }
+                for (Location loc: lpe.getCertainMines()) {
+                    recordAction(new Action(loc, Action.FLAG, MoveMethod.PROBABILITY_ENGINE, "", BigDecimal.ONE));
+                }
+
+                if (!quiet) {
+                    newLine("------ Probability Engine Analysis ------");
+                    newLine("There are " + lpe.getCertainClears().size() + " certain clears found by the log-space engine");
+                }
+
+                if (playChords) {
+                    EfficiencyHelper eff = new EfficiencyHelper(boardState, wholeEdge, boardState.getActions());
+                    fm = new FinalMoves(eff.process().toArray(new Action[0]));
+                } else {
+                    fm = new FinalMoves(boardState.getActions().toArray(new Action[0]));
+                }
+                return fm;
+            }
+        }
+
+        // otherwise fall back to the exact engine, guesses need probabilities which may be within the log-space engine's noise
         pe = new ProbabilityEngineFast(boardState, wholeEdge, unrevealed, minesLeft);
         pe.process();
+        logEngineFirst = pe.foundCertainty();
 
         // get the new deadLocations with any found by the probability engine
         deadLocations = pe.getDeadLocations();
 
-        offEdgeProb = pe.getOffEdgeProb();
+        setOffEdgeProb(pe.getOffEdgeProb());
 
-        if (offEdgeProb.compareTo(BigDecimal.ONE) > 0) {
+        if (offEdgeProb > 1d) {
             this.logger.log(Logger.Level.ERROR, "Game %s has probability off edge of %f", myGame.showGameKey(), offEdgeProb);
         } else {
-            this.logger.log(Logger.Level.INFO, "Probability off edge is %f", offEdgeProb);
+            if (!quiet) {
+                this.logger.log(Logger.Level.INFO, "Probability off edge is %f", offEdgeProb);
+            }
         }
 
         // if all the locations are dead then just use any one (unless there is only one solution)
         if (deadLocations.size() == allWitnessedSquares.size() && deadLocations.size() != 0) {
             if (pe.getSolutionCount().compareTo(BigInteger.ONE) == 0) {
-                this.logger.log(Logger.Level.INFO, "Only one solution left");
+                if (!quiet) {
+                    this.logger.log(Logger.Level.INFO, "Only one solution left");
+                }
             } else {
-                this.logger.log(Logger.Level.INFO, "All locations are dead");
+                if (!quiet) {
+                    this.logger.log(Logger.Level.INFO, "All locations are dead");
+                }
             }
 
             //deadLocations = Area.EMPTY_AREA;
@@ -458,7 +758,7 @@ public class ExtendedSolver extends Solver {
             CandidateLocation cl = new CandidateLocation(picked.x, picked.y, pe.getProbability(picked), 0, 0);
             Action a = cl.buildAction(MoveMethod.GUESS);
             // let the boardState decide what to do with this action
-            boardState.setAction(a);
+            recordAction(a);
 
             result = boardState.getActions().toArray(new Action[0]);
 
@@ -488,22 +788,30 @@ public class ExtendedSolver extends Solver {
         }
         */
 
-        BigDecimal offEdgeCutoff = pe.getBestOnEdgeProb().multiply(Solver.OFF_EDGE_TOLERENCE);
+        double offEdgeCutoff = pe.getBestOnEdgeProb().doubleValue() * OFF_EDGE_CUTOFF_TOLERENCE;
 
-        this.logger.log(Logger.Level.INFO, "Off edge threshold is %f", offEdgeCutoff);
+        if (!quiet) {
+            this.logger.log(Logger.Level.INFO, "Off edge threshold is %f", offEdgeCutoff);
+        }
 
         // are clears off the edge within the permitted cut-off?
-        boolean addOffEdgeOptions = (offEdgeProb.compareTo(offEdgeCutoff) > 0);
+        boolean addOffEdgeOptions = (offEdgeProb > offEdgeCutoff);
 
-        this.logger.log(Logger.Level.INFO, "Probability Engine processing took %d milliseconds", pe.getDuration());
-        this.logger.log(Logger.Level.INFO, "----- Probability engine finished -----");
+        if (!quiet) {
+            this.logger.log(Logger.Level.INFO, "Probability Engine processing took %d milliseconds", pe.getDuration());
+            this.logger.log(Logger.Level.INFO, "----- Probability engine finished -----");
+        }
 
-        newLine("------ Probability Engine Analysis ------");
-        newLine("There are " + pe.getIndependentGroups() + " independent edges on the board");
-        newLine("Probability Engine processing took " + pe.getDuration() + " milliseconds");
+        if (!quiet) {
+            newLine("------ Probability Engine Analysis ------");
+            newLine("There are " + pe.getIndependentGroups() + " independent edges on the board");
+            newLine("Probability Engine processing took " + pe.getDuration() + " milliseconds");
+        }
 
         if (pe.getSolutionCount().bitLength() < 40) {
-            newLine("There are " + pe.getSolutionCount() + " candidate solutions remaining");
+            if (!quiet) {
+                newLine("There are " + pe.getSolutionCount() + " candidate solutions remaining");
+            }
         }
 
         boolean certainClearFound = pe.foundCertainty();
@@ -519,9 +827,11 @@ public class ExtendedSolver extends Solver {
                     Action a = new Action(findFifty, Action.CLEAR, MoveMethod.UNAVOIDABLE_GUESS, "Fifty-Fifty",  pe.getProbability(findFifty));
                     fm = new FinalMoves(a);
 
-                    newLine("--------- Unavoidable Guess ---------");
-                    newLine("An unavoidable guess has been found - playing now to save time");
-                    this.logger.log(Logger.Level.DEBUG, "Fifty/Fifty found in game %s : %s", myGame.showGameKey(), fm.result[0] );
+                    if (!quiet) {
+                        newLine("--------- Unavoidable Guess ---------");
+                        newLine("An unavoidable guess has been found - playing now to save time");
+                        this.logger.log(Logger.Level.DEBUG, "Fifty/Fifty found in game %s : %s", myGame.showGameKey(), fm.result[0] );
+                    }
                     return fm;
                 }
             }
@@ -529,69 +839,81 @@ public class ExtendedSolver extends Solver {
 
         // if there are no certain moves then process any Isolated non-dead edges we have found
         if (!certainClearFound && !pe.getIsolatedEdges().isEmpty()) {
-            this.logger.log(Logger.Level.INFO, "Processing an Isolated edge");
-            newLine("--------- Isolated Area ---------");
-            newLine("An isolated area has been found which can be processed separately");
-
-            // get the smallest isolated area to solve
-            BruteForce cruncher = null;
-            for (BruteForce c: pe.getIsolatedEdges()) {
-                if (cruncher == null || c.getTileCount() < cruncher.getTileCount()) {
-                    cruncher = c;
-                }
+            if (!quiet) {
+                this.logger.log(Logger.Level.INFO, "Processing an Isolated edge");
+                newLine("--------- Isolated Area ---------");
+                newLine("An isolated area has been found which can be processed separately");
             }
 
-            // determine all possible solutions
-            cruncher.process();
+            // solve all the isolated areas at once and play in the smallest one which could be solved
+            List<BruteForce> crunchers = new ArrayList<>(pe.getIsolatedEdges());
+            crunchers.sort(Comparator.comparingInt(BruteForce::getTileCount));
+            List<BruteForceAnalysisModel> analyses = analyseIsolatedEdges(crunchers);
 
-            if (cruncher.hasRun()) {
+            BruteForceAnalysisModel bfa = null;
+            for (BruteForceAnalysisModel analysis: analyses) {
+                if (analysis != null) {
+                    bfa = analysis;
+                    break;
+                }
+            }
 
-                // determine best way to solver them
-                BruteForceAnalysisModel bfa = cruncher.getBruteForceAnalysis();
-                if (bfa != null) {
-                    bfa.process();
+            // an edge the parallel analysis solved is played from its tree
+            ParallelBruteForceAnalysis solved = (bfa == null) ? null : solvedEndgames.get(bfa);
+            if (solved != null) {
+                parallelAnalysis = solved;
+                bfa = null;
+            }
 
-                    // if after trying to process the data we can't complete then abandon it
-                    if (!bfa.isComplete()) {
-                        this.logger.log(Logger.Level.WARN, "%s Abandoned the Brute Force Analysis after %d steps", myGame.showGameKey(), bfa.getNodeCount() );
-                        bfa = null;
+            if (bfa != null) { // try and get the best long term move
 
-                    } else { // otherwise try and get the best long term move
+                // the analysis is walked from here on, so it can't be reused from the cache
+                isolatedAnalyses.values().remove(bfa);
 
-                        bruteForceAnalysis = bfa;  // by setting this we will walk the tree until completed in subsequent solver calls
+                bruteForceAnalysis = bfa;  // by setting this we will walk the tree until completed in subsequent solver calls
 
-                        newLine("Built probability tree from " + bruteForceAnalysis.getSolutionCount() + " solutions in " + bruteForceAnalysis.getNodeCount() + " steps");
-                        Action move = bruteForceAnalysis.getNextMove(boardState);
-                        if (move != null) {
-                            this.logger.log(Logger.Level.INFO, "%s Brute Force Analysis: %s", myGame.showGameKey(), move);
-                            //newLine("Brute Force Analysis move is " + move.asString());
-                            fm = new FinalMoves(move);
-                            return fm;
-                        } else {
-                            if (bruteForceAnalysis.allDead()) {
-                                this.logger.log(Logger.Level.INFO, "All Brute Force Analysis moves are dead");
+                if (!quiet) {
+                    newLine("Built probability tree from " + bruteForceAnalysis.getSolutionCount() + " solutions in " + bruteForceAnalysis.getNodeCount() + " steps");
+                }
+                Action move = bruteForceAnalysis.getNextMove(boardState);
+                if (move != null) {
+                    if (!quiet) {
+                        this.logger.log(Logger.Level.INFO, "%s Brute Force Analysis: %s", myGame.showGameKey(), move);
+                    }
+                    //newLine("Brute Force Analysis move is " + move.asString());
+                    fm = new FinalMoves(move);
+                    return fm;
+                } else {
+                    if (bruteForceAnalysis.allDead()) {
+                        if (!quiet) {
+                            this.logger.log(Logger.Level.INFO, "All Brute Force Analysis moves are dead");
+                        }
 
-                                // otherwise pick one of the ones on the edge
-                                Location picked = getLowest(bruteForceAnalysis.getDeadLocations().getLocations());
+                        // otherwise pick one of the ones on the edge
+                        Location picked = getLowest(bruteForceAnalysis.getDeadLocations().getLocations());
 
-                                //Location anyLocWillDo = null;
-                                //for (Location l: bruteForceAnalysis.getDeadLocations().getLocations()) {  // get the first location
-                                //	anyLocWillDo = l;
-                                //	break;
-                                //}
+                        //Location anyLocWillDo = null;
+                        //for (Location l: bruteForceAnalysis.getDeadLocations().getLocations()) {  // get the first location
+                        //	anyLocWillDo = l;
+                        //	break;
+                        //}
 
-                                fm = new FinalMoves(new Action(picked, Action.CLEAR, MoveMethod.GUESS, "", pe.getProbability(picked)));
-                                return fm;
-                            }
-                            this.logger.log(Logger.Level.WARN, "Game %s Brute Force Analysis: no move found!", myGame.showGameKey());
-                        }
+                        fm = new FinalMoves(new Action(picked, Action.CLEAR, MoveMethod.GUESS, "", pe.getProbability(picked)));
+                        return fm;
                     }
-                } else {
-                    this.logger.log(Logger.Level.WARN, "Game %s Brute Force analysis class is null", myGame.showGameKey());
+                    this.logger.log(Logger.Level.WARN, "Game %s Brute Force Analysis: no move found!", myGame.showGameKey());
                 }
-
             } else {
-                this.logger.log(Logger.Level.WARN, "Game %s Brute Force did not run", myGame.showGameKey());
+                if (parallelAnalysis != null) {
+                    Action move = parallelAnalysis.getNextMove(boardState);
+                    if (move != null) {
+                        if (!quiet) {
+                            this.logger.log(Logger.Level.INFO, "%s Parallel Brute Force Analysis: %s", myGame.showGameKey(), move);
+                        }
+                        return new FinalMoves(move);
+                    }
+                    parallelAnalysis = null;
+                }
             }
         }
 
@@ -605,39 +927,51 @@ public class ExtendedSolver extends Solver {
                     Action a = new Action(findFifty, Action.CLEAR, MoveMethod.UNAVOIDABLE_GUESS, "Fifty-Fifty",  pe.getProbability(findFifty));
                     fm = new FinalMoves(a);
 
-                    newLine("--------- Unavoidable Guess ---------");
-                    newLine("An unavoidable guess has been found - playing now to save time");
-                    this.logger.log(Logger.Level.DEBUG, "Fifty Fifty %s : %s", myGame.showGameKey(), fm.result[0]);
+                    if (!quiet) {
+                        newLine("--------- Unavoidable Guess ---------");
+                        newLine("An unavoidable guess has been found - playing now to save time");
+                        this.logger.log(Logger.Level.DEBUG, "Fifty Fifty %s : %s", myGame.showGameKey(), fm.result[0]);
+                    }
                     return fm;
                 }
             }
         }
 
         if (bestCandidates.isEmpty()) {
-            newLine("The probability engine found no candidate moves on the edge");
-            newLine("Probability off the edge is " + Action.FORMAT_2DP.format(offEdgeProb.multiply(ONE_HUNDRED)) + "%");
+            if (!quiet) {
+                newLine("The probability engine found no candidate moves on the edge");
+                newLine("Probability off the edge is " + Action.FORMAT_2DP.format(offEdgeProb * 100d) + "%");
+            }
         } else {
-            newLine("The probability engine found " + bestCandidates.size() + " candidate moves on the edge");
+            if (!quiet) {
+                newLine("The probability engine found " + bestCandidates.size() + " candidate moves on the edge");
+            }
         }
 
-        BigDecimal safeDensity = BigDecimal.valueOf( (double) (unrevealed - minesLeft) / (double) unrevealed);
-        this.logger.log(Logger.Level.INFO, "Safe density %f", safeDensity);
-        BigDecimal safeDensity3 = new BigDecimal(pe.getSolutionCount()).multiply(safeDensity).multiply(safeDensity).multiply(safeDensity);
-        this.logger.log(Logger.Level.INFO, "BFDA Solution value %f", safeDensity3);
+        double safeDensity = (double) (unrevealed - minesLeft) / (double) unrevealed;
+        if (!quiet) {
+            this.logger.log(Logger.Level.INFO, "Safe density %f", safeDensity);
+        }
+        double safeDensity3 = pe.getSolutionCount().doubleValue() * safeDensity * safeDensity * safeDensity;
+        if (!quiet) {
+            this.logger.log(Logger.Level.INFO, "BFDA Solution value %f", safeDensity3);
+        }
 
         // do brute force if the number of candidate solutions is not greater than the allowable maximum
         //boolean doBruteForce = (pe.getSolutionCount().compareTo(BigInteger.valueOf(preferences.getBruteForceMaxSolutions())) <= 0);
         boolean doBruteForce = (pe.getSolutionCount().compareTo(BigInteger.valueOf(preferences.getBruteForceMaxSolutions())) <= 0)
-                || (safeDensity3.compareTo(BigDecimal.valueOf(preferences.getBruteForceVariableSolutions())) <= 0);
+                || (safeDensity3 <= preferences.getBruteForceVariableSolutions());
 
         //boolean certainFlagFound = !pe.getMines().isEmpty();
 
         BruteForceAnalysisModel incompleteBFA = null;  // this is used to carry forward an analysis run which didn't complete
 
         // Probability engine says there are few enough candidate solutions to do a Brute force deep analysis - so lets try
-        if (doBruteForce && !certainClearFound) {
-            this.logger.log(Logger.Level.INFO, "----- Brute Force starting -----");
-            newLine("----------- Brute Force Analysis -----------");
+        if (doBruteForce && !certainClearFound && reserveBruteForce(pe.getSolutionCount().min(BigInteger.valueOf(Integer.MAX_VALUE)).longValue(), unrevealed)) {
+            if (!quiet) {
+                this.logger.log(Logger.Level.INFO, "----- Brute Force starting -----");
+                newLine("----------- Brute Force Analysis -----------");
+            }
 
             allUnrevealedSquares = boardState.getAllUnrevealedSquares();
 
@@ -648,60 +982,85 @@ public class ExtendedSolver extends Solver {
             bf.process();
 
             if (bf.hasRun()) {
-                newLine("Found " + bf.getSolutionCount() + " candidate solutions from " + bf.getIterations() + " iterations");
+                if (!quiet) {
+                    newLine("Found " + bf.getSolutionCount() + " candidate solutions from " + bf.getIterations() + " iterations");
+                }
 
                 // Interpret the brute force data if we have some
                 this.bruteForceAnalysis = bf.getBruteForceAnalysis();
                 if (!bf.hasCertainClear() && bruteForceAnalysis != null) {  // if we haven't found some 100% clears and we can do a deeper analysis
 
-                    bruteForceAnalysis.process();
-
-                    // if all the locations are dead then just use any one
-                    if (bruteForceAnalysis.allDead()) {
-                        this.logger.log(Logger.Level.INFO, "Brute force deep analysis has detected that all locations are dead");
-                        // if there are no squares next to a witness then just guess
-                        if (allWitnessedSquares.getLocations().isEmpty()) {
-                            return guess(wholeEdge);
+                    // the parallel analysis plays an endgame solved before from the brute force cache, and caches one it solves
+                    ParallelBruteForceAnalysis solved = runParallelAnalysis(bruteForceAnalysis);
+                    if (solved != null) {
+                        showParallelAnalysis(solved);
+                    }
+                    Action solvedMove = (solved == null) ? null : solved.getNextMove(boardState);
+                    if (solvedMove != null) {
+                        if (!quiet) {
+                            this.logger.log(Logger.Level.DEBUG, "Solved endgame move: %s", solvedMove);
                         }
+                        parallelAnalysis = solved;
+                        bruteForceAnalysis = null;
+                        deadLocations = solved.getDeadLocations();
+                        fm = new FinalMoves(solvedMove);
 
-                        // otherwise pick one of the ones on the edge
-                        Location picked = null;
-                        for (Location l: allWitnessedSquares.getLocations()) {
-                            if (pe.getProbability(l).signum() != 0) { // pick a tile which isn't a mine
-                                picked = l;
-                                break;
+                    } else {
+                        bruteForceAnalysis.process();
+
+                        // if all the locations are dead then just use any one
+                        if (bruteForceAnalysis.allDead()) {
+                            if (!quiet) {
+                                this.logger.log(Logger.Level.INFO, "Brute force deep analysis has detected that all locations are dead");
+                            }
+                            // if there are no squares next to a witness then just guess
+                            if (allWitnessedSquares.getLocations().isEmpty()) {
+                                return guess(wholeEdge);
                             }
-                        }
-                        CandidateLocation cl = new CandidateLocation(picked.x, picked.y, pe.getProbability(picked), 0, 0);
-                        Action a = cl.buildAction(MoveMethod.GUESS);
-                        // let the boardState decide what to do with this action
-                        boardState.setAction(a);
 
-                        result = boardState.getActions().toArray(new Action[0]);
+                            // otherwise pick one of the ones on the edge
+                            Location picked = null;
+                            for (Location l: allWitnessedSquares.getLocations()) {
+                                if (pe.getProbability(l).signum() != 0) { // pick a tile which isn't a mine
+                                    picked = l;
+                                    break;
+                                }
+                            }
+                            CandidateLocation cl = new CandidateLocation(picked.x, picked.y, pe.getProbability(picked), 0, 0);
+                            Action a = cl.buildAction(MoveMethod.GUESS);
+                            // let the boardState decide what to do with this action
+                            recordAction(a);
 
-                        fm = new FinalMoves(result);
-                        return fm;
-                    }
+                            result = boardState.getActions().toArray(new Action[0]);
 
+                            fm = new FinalMoves(result);
+                            return fm;
+                        }
 
-                    // if after trying to process the data we can't complete then abandon it
-                    if (!bruteForceAnalysis.isComplete()) {
-                        this.logger.log(Logger.Level.WARN, "Game %s Abandoned the Brute Force Analysis after %d steps, %d of %d moves analysed",
-                                myGame.showGameKey(), bruteForceAnalysis.getNodeCount(),  bruteForceAnalysis.getMovesProcessed(),  bruteForceAnalysis.getMovesToProcess());
-                        incompleteBFA = bruteForceAnalysis;  // remember the incomplete analysis
-                        bruteForceAnalysis = null;
 
-                    } else { // otherwise try and get the best long term move
+                        // if after trying to process the data we can't complete then abandon it
+                        if (!bruteForceAnalysis.isComplete()) {
+                            this.logger.log(Logger.Level.WARN, "Game %s Abandoned the Brute Force Analysis after %d steps, %d of %d moves analysed",
+                                    myGame.showGameKey(), bruteForceAnalysis.getNodeCount(),  bruteForceAnalysis.getMovesProcessed(),  bruteForceAnalysis.getMovesToProcess());
+                            incompleteBFA = bruteForceAnalysis;  // remember the incomplete analysis
+                            bruteForceAnalysis = null;
 
-                        deadLocations = bruteForceAnalysis.getDeadLocations();
+                        } else { // otherwise try and get the best long term move
 
-                        newLine("Built probability tree from " + bruteForceAnalysis.getSolutionCount() + " solutions in " + bruteForceAnalysis.getNodeCount() + " steps");
-                        Action move = bruteForceAnalysis.getNextMove(boardState);
-                        if (move != null) {
-                            this.logger.log(Logger.Level.DEBUG, "Brute Force Analysis move: %s", move);
-                            fm = new FinalMoves(move);
-                        } else {
-                            this.logger.log(Logger.Level.WARN, "Game %s Brute Force Analysis: no move found!", myGame.showGameKey());
+                            deadLocations = bruteForceAnalysis.getDeadLocations();
+
+                            if (!quiet) {
+                                newLine("Built probability tree from " + bruteForceAnalysis.getSolutionCount() + " solutions in " + bruteForceAnalysis.getNodeCount() + " steps");
+                            }
+                            Action move = bruteForceAnalysis.getNextMove(boardState);
+                            if (move != null) {
+                                if (!quiet) {
+                                    this.logger.log(Logger.Level.DEBUG, "Brute Force Analysis move: %s", move);
+                                }
+                                fm = new FinalMoves(move);
+                            } else {
+                                this.logger.log(Logger.Level.WARN, "Game %s Brute Force Analysis: no move found!", myGame.showGameKey());
+                            }
                         }
                     }
                 }
@@ -710,18 +1069,28 @@ public class ExtendedSolver extends Solver {
                 if (!fm.moveFound) {
 
                     if (bestCandidates.isEmpty()) {
-                        newLine("Brute Force didn't find any moves...?");
+                        if (!quiet) {
+                            newLine("Brute Force didn't find any moves...?");
+                        }
                     } else if (bestCandidates.get(0).getProbability().compareTo(BigDecimal.ONE) == 0) {
-                        newLine("There are " + bestCandidates.size() + " certain moves");
+                        if (!quiet) {
+                            newLine("There are " + bestCandidates.size() + " certain moves");
+                        }
                     } else {
-                        newLine("There are no certain moves, so use the best guess");
+                        if (!quiet) {
+                            newLine("There are no certain moves, so use the best guess");
+                        }
                     }
                 }
 
             } else {
-                newLine("Brute Force rejected - too many iterations to analyse");
+                if (!quiet) {
+                    newLine("Brute Force rejected - too many iterations to analyse");
+                }
+            }
+            if (!quiet) {
+                this.logger.log(Logger.Level.INFO, "----- Brute Force finished -----");
             }
-            this.logger.log(Logger.Level.INFO, "----- Brute Force finished -----");
         }
 
         //  evaluate positions
@@ -734,7 +1103,9 @@ public class ExtendedSolver extends Solver {
         // if we have few enough solutions do an adversarial rollout
         if (!fm.moveFound && !certainClearFound && !pe.isBestGuessOffEdge() && pe.getSolutionCount().compareTo(BigInteger.valueOf(preferences.getRolloutSolutions())) < 0) {
 
-            this.logger.log(Logger.Level.INFO, "Doing adversarial rollout");
+            if (!quiet) {
+                this.logger.log(Logger.Level.INFO, "Doing adversarial rollout");
+            }
 
             long nanoStart = System.nanoTime();
             WitnessWeb arWholeEdge = new WitnessWeb(boardState, allWitnesses, allWitnessedSquares.getLocations());
@@ -748,7 +1119,9 @@ public class ExtendedSolver extends Solver {
 
             long nanoEnd = System.nanoTime();
 
-            this.logger.log(Logger.Level.INFO, "Adversarial rollout took %f milli seconds", + (nanoEnd - nanoStart) / 1000000 );
+            if (!quiet) {
+                this.logger.log(Logger.Level.INFO, "Adversarial rollout took %f milli seconds", + (nanoEnd - nanoStart) / 1000000 );
+            }
 
         }
 
@@ -766,7 +1139,7 @@ public class ExtendedSolver extends Solver {
                     for (CandidateLocation cl: bestCandidates) {
                         Action move = cl.buildAction(MoveMethod.PROBABILITY_ENGINE);
                         // let the boardState decide what to do with this action
-                        boardState.setAction(move);
+                        recordAction(move);
                         break;
                     }
                     Action[] moves = boardState.getActions().toArray(new Action[0]);
@@ -774,18 +1147,25 @@ public class ExtendedSolver extends Solver {
                 }
                 return fm;
             } else if (addOffEdgeOptions && !certainClearFound) { // evaluate the off edge moves
-                this.logger.log(Logger.Level.INFO, "Adding the off edge super locations to the candidate moves");
+                if (!quiet) {
+                    this.logger.log(Logger.Level.INFO, "Adding the off edge super locations to the candidate moves");
+                }
 
                 if (allUnrevealedSquares == null) {   // defer this until we need it, can be expensive
                     allUnrevealedSquares = boardState.getAllUnrevealedSquares();
                 }
 
-                this.logger.log(Logger.Level.DEBUG, "About to evaluate best candidates -->");
+                if (!quiet) {
+                    this.logger.log(Logger.Level.DEBUG, "About to evaluate best candidates -->");
+                }
+                prefetchOutcomes(wholeEdge, bestCandidates);
                 evaluateLocations.evaluateLocations(bestCandidates);
 
                 evaluateLocations.evaluateOffEdgeCandidates(allUnrevealedSquares);
 
-                this.logger.log(Logger.Level.DEBUG, "<-- Done");
+                if (!quiet) {
+                    this.logger.log(Logger.Level.DEBUG, "<-- Done");
+                }
 
                 evaluateLocations.showResults();
 
@@ -798,16 +1178,18 @@ public class ExtendedSolver extends Solver {
                 for (CandidateLocation cl: bestCandidates) {
                     Action move = cl.buildAction(MoveMethod.PROBABILITY_ENGINE);
                     // let the boardState decide what to do with this action
-                    boardState.setAction(move);
+                    recordAction(move);
 
                 }
 
                 // if we have a certain clear then also register all the mines
                 if (certainClearFound) {
-                    this.logger.log(Logger.Level.INFO, "Found %d mines using the probability engine", pe.getMines().size());
+                    if (!quiet) {
+                        this.logger.log(Logger.Level.INFO, "Found %d mines using the probability engine", pe.getMines().size());
+                    }
                     for (Location loc: pe.getMines()) {
                         // let the boardState decide what to do with this action
-                        boardState.setAction(new Action(loc, Action.FLAG, MoveMethod.PROBABILITY_ENGINE, "",  BigDecimal.ONE));
+                        recordAction(new Action(loc, Action.FLAG, MoveMethod.PROBABILITY_ENGINE, "",  BigDecimal.ONE));
                     }
 
                 }
@@ -821,9 +1203,14 @@ public class ExtendedSolver extends Solver {
 
 
             } else {    // evaluate which of the best candidates to choose
-                this.logger.log(Logger.Level.DEBUG, "About to evaluate best candidates -->");
+                if (!quiet) {
+                    this.logger.log(Logger.Level.DEBUG, "About to evaluate best candidates -->");
+                }
+                prefetchOutcomes(wholeEdge, bestCandidates);
                 evaluateLocations.evaluateLocations(bestCandidates);
-                this.logger.log(Logger.Level.DEBUG, "<-- Done");
+                if (!quiet) {
+                    this.logger.log(Logger.Level.DEBUG, "<-- Done");
+                }
 
                 evaluateLocations.showResults();
 
@@ -834,7 +1221,9 @@ public class ExtendedSolver extends Solver {
 
             // if still no move then guess
             if (!fm.moveFound) {
-                newLine("No certain, or high probability moves found, guess away from a witness");
+                if (!quiet) {
+                    newLine("No certain, or high probability moves found, guess away from a witness");
+                }
                 fm = guess(wholeEdge);
             }
         }
@@ -846,14 +1235,16 @@ public class ExtendedSolver extends Solver {
     protected FinalMoves guess(WitnessWeb wholeEdge) {
         Action action = null;
 
-        this.logger.log(Logger.Level.INFO, "Picking a guess");
+        if (!quiet) {
+            this.logger.log(Logger.Level.INFO, "Picking a guess");
+        }
 
         // get the starting move if we are at the start of the game
         if (myGame.getGameState() == GameStateModel.NOT_STARTED && playOpening) {
             if (overriddenStartLocation != null) {
-                action = new Action(overriddenStartLocation, Action.CLEAR, MoveMethod.BOOK, "", offEdgeProb);
+                action = new Action(overriddenStartLocation, Action.CLEAR, MoveMethod.BOOK, "", getBigOffEdgeProb());
             } else {
-                action = new Action(myGame.getStartLocation(), Action.CLEAR, MoveMethod.BOOK, "", offEdgeProb);
+                action = new Action(myGame.getStartLocation(), Action.CLEAR, MoveMethod.BOOK, "", getBigOffEdgeProb());
             }
         }
 
@@ -861,19 +1252,30 @@ public class ExtendedSolver extends Solver {
         // if there is no book move then look for a guess off the edge
         if (action == null) {
             List<CandidateLocation> list = new ArrayList<>();
+            BigDecimal offEdgeProb = getBigOffEdgeProb();
 
 
-            for (int i=0; i < myGame.getWidth(); i++) {
-                for (int j=0; j < myGame.getHeight(); j++) {
-                    // if we are an unrevealed square and we aren't on the contour
-                    // then store the location
-                    if (boardState.isUnrevealed(i,j)) {
-                        Location l = new Location(i, j);
-                        // if we aren't on the edge and there are some adjacent squares
-                        if ((wholeEdge == null || !wholeEdge.isOnWeb(l))) {
-                            list.add(new CandidateLocation(l.x, l.y, offEdgeProb, boardState.countAdjacentUnrevealed(l), boardState.countAdjacentConfirmedFlags(l)));
-                        }
+            if (wholeEdge != null && boardTracker.isBuilt()) {
+                // the tracker keeps the squares off the edge grouped by their neighbour counts, one from each group is enough
+                for (Location l: boardTracker.getOffEdgeCandidates(wholeEdge::isOnWeb)) {
+                    list.add(new CandidateLocation(l.x, l.y, offEdgeProb, boardTracker.countAdjacentUnrevealed(l), boardTracker.countAdjacentFlags(l)));
+                }
+            }
+
+            // nothing tracked yet (or the tracker doesn't know the squares off this edge) so look at the whole board
+            if (list.isEmpty()) {
+                for (int i=0; i < myGame.getWidth(); i++) {
+                    for (int j=0; j < myGame.getHeight(); j++) {
+                        // if we are an unrevealed square and we aren't on the contour
+                        // then store the location
+                        if (boardState.isUnrevealed(i,j)) {
+                            Location l = geometry.getLocation(i, j);
+                            // if we aren't on the edge and there are some adjacent squares
+                            if ((wholeEdge == null || !wholeEdge.isOnWeb(l))) {
+                                list.add(new CandidateLocation(l.x, l.y, offEdgeProb, boardState.countAdjacentUnrevealed(l), boardState.countAdjacentConfirmedFlags(l)));
+                            }
 
+                        }
                     }
                 }
             }
@@ -887,11 +1289,28 @@ public class ExtendedSolver extends Solver {
         }
 
         // this will check there isn't a flag blocking the move
-        boardState.setAction(action);
+        recordAction(action);
 
         return new FinalMoves(boardState.getActions().toArray(new Action[0]));
     }
 
+    private void setOffEdgeProb(double prob) {
+        offEdgeProb = prob;
+        bigOffEdgeProb = null;
+    }
+
+    private void setOffEdgeProb(BigDecimal prob) {
+        offEdgeProb = prob.doubleValue();
+        bigOffEdgeProb = prob;
+    }
+
+    private BigDecimal getBigOffEdgeProb() {
+        if (bigOffEdgeProb == null) {
+            bigOffEdgeProb = BigDecimal.valueOf(offEdgeProb);
+        }
+        return bigOffEdgeProb;
+    }
+
     private int findTrivialActions(List<? extends Location> witnesses) {
 
         int count = 0;
@@ -901,11 +1320,12 @@ public class ExtendedSolver extends Solver {
             if (isObviousClear(loc)) {
                 //boolean accepted = boardState.setChordLocation(loc);
 
-                for (Location l: boardState.getAdjacentSquaresIterable(loc)) {
+                for (int neighbour: geometry.getNeighbours(geometry.index(loc))) {
+                    Location l = geometry.getLocation(neighbour);
                     if (boardState.isUnrevealed(l)) {
                         if (!boardState.alreadyActioned(l)) {
                             count++;
-                            boardState.setAction(new Action(l, Action.CLEAR, MoveMethod.TRIVIAL, "", BigDecimal.ONE));
+                            recordAction(new Action(l, Action.CLEAR, MoveMethod.TRIVIAL, "", BigDecimal.ONE));
 
                         }
 
@@ -913,29 +1333,41 @@ public class ExtendedSolver extends Solver {
                 }
 
             } else if (isObviousFlag(loc)) {
-                for (Location l: boardState.getAdjacentSquaresIterable(loc)) {
+                for (int neighbour: geometry.getNeighbours(geometry.index(loc))) {
+                    Location l = geometry.getLocation(neighbour);
                     if (boardState.isUnrevealed(l)) {
                         if (!boardState.alreadyActioned(l)) {
                             count++;
 
-                            boardState.setAction(new Action(l, Action.FLAG, MoveMethod.TRIVIAL, "",  BigDecimal.ONE));
+                            recordAction(new Action(l, Action.FLAG, MoveMethod.TRIVIAL, "",  BigDecimal.ONE));
                             //boardState.setFlagConfirmed(l);
                         }
 
                     }
                 }
+            } else {
+                // nothing here until one of its neighbours changes
+                boardTracker.setClean(loc, false);
             }
         }
         return count;
     }
 
+    // flags go into the tracker straight away, so the counts it gives for the rest of the analysis include them
+    private void recordAction(Action action) {
+        boardState.setAction(action);
+        if (action.getAction() == Action.FLAG) {
+            boardTracker.setFlagConfirmed(action);
+        }
+    }
+
     private boolean isObviousClear(Location loc) {
 
         //if (boardState.isRevealed(x,y) && boardState.getWitnessValue(x,y) != 0) {
-        int flags = boardState.countAdjacentConfirmedFlags(loc);
+        int flags = boardTracker.countAdjacentFlags(loc);
 
         // if we have all the flags and there is something to clear
-        if (boardState.getWitnessValue(loc) == flags && boardState.countAdjacentUnrevealed(loc) > 0) {
+        if (boardTracker.getValue(loc) == flags && boardTracker.countAdjacentUnrevealed(loc) > 0) {
             return true;
         }
         //}
@@ -948,11 +1380,11 @@ public class ExtendedSolver extends Solver {
     private boolean isObviousFlag(Location loc) {
 
         //if (boardState.isRevealed(x,y) && boardState.getWitnessValue(x,y) != 0) {
-        int flags = boardState.countAdjacentConfirmedFlags(loc);
-        int free = boardState.countAdjacentUnrevealed(loc);
+        int flags = boardTracker.countAdjacentFlags(loc);
+        int free = boardTracker.countAdjacentUnrevealed(loc);
 
         // if we only have space for the flags and there is some space
-        if (boardState.getWitnessValue(loc) == flags + free && free > 0) {
+        if (boardTracker.getValue(loc) == flags + free && free > 0) {
             return true;
         }
         //}
@@ -970,12 +1402,15 @@ public class ExtendedSolver extends Solver {
 
         for (Location loc: witnesses) {
 
-            int flags = boardState.countAdjacentConfirmedFlags(loc);
-            int free = boardState.countAdjacentUnrevealed(loc);
+            int flags = boardTracker.countAdjacentFlags(loc);
+            int free = boardTracker.countAdjacentUnrevealed(loc);
+            int value = boardTracker.getValue(loc);
+
+            int found = 0;
 
             // if there are still some flags to find and there are
             // too many places for it to be obvious ...
-            if (free > 0 && boardState.getWitnessValue(loc) > flags && boardState.getWitnessValue(loc) < flags + free) {
+            if (free > 0 && value > flags && value < flags + free) {
 
                 // get the un-revealed squares
                 square = boardState.getAdjacentUnrevealedSquares(loc);
@@ -986,14 +1421,20 @@ public class ExtendedSolver extends Solver {
                 // and crunch the result
                 if (witness.size() > 1) {
 
-                    CrunchResult output = crunch(square, witness, new SequentialIterator(boardState.getWitnessValue(loc) - flags, square.size()), false, null);
-                    count = count + checkBigTally(output, MoveMethod.LOCAL, "");
-                    count = count + checkWitnesses(output, MoveMethod.LOCAL, "");
+                    CrunchResult output = crunch(square, witness, new SequentialIterator(value - flags, square.size()), false, null);
+                    found = found + checkBigTally(output, MoveMethod.LOCAL, "");
+                    found = found + checkWitnesses(output, MoveMethod.LOCAL, "");
 
                 }
 
             }
 
+            // nothing here until something near it changes
+            if (found == 0) {
+                boardTracker.setClean(loc, true);
+            }
+
+            count = count + found;
 
         }
 
@@ -1021,7 +1462,7 @@ public class ExtendedSolver extends Solver {
                 if (!boardState.alreadyActioned(l)) {
                     result++;
 
-                    boardState.setAction(new Action(l, Action.FLAG, method, comment, BigDecimal.ONE));
+                    recordAction(new Action(l, Action.FLAG, method, comment, BigDecimal.ONE));
 
                 }
 
@@ -1030,7 +1471,7 @@ public class ExtendedSolver extends Solver {
                 if (!boardState.alreadyActioned(l)) {
                     result++;
 
-                    boardState.setAction(new Action(l, Action.CLEAR, method, comment, BigDecimal.ONE));
+                    recordAction(new Action(l, Action.CLEAR, method, comment, BigDecimal.ONE));
                     //display("clear found at " + x + " " + y);
                 }
             }
@@ -1072,7 +1513,8 @@ public class ExtendedSolver extends Solver {
 
         int result=0;
 
-        for (Location l: boardState.getAdjacentSquaresIterable(witness)) {
+        for (int neighbour: geometry.getNeighbours(geometry.index(witness))) {
+            Location l = geometry.getLocation(neighbour);
 
             // find all the unflagged and unrevealed squares
             if (!boardState.isRevealed(l) && !boardState.isConfirmedFlag(l)) {
@@ -1098,7 +1540,7 @@ public class ExtendedSolver extends Solver {
                     }
                     result++;
 
-                    boardState.setAction(act);
+                    recordAction(act);
                     //display("Discovered witness information at " + x1 + " " + y1);
                 }
 
@@ -1111,10 +1553,19 @@ public class ExtendedSolver extends Solver {
 
     }
 
+    /**
+     * @return the layout of the board being solved
+     */
+    protected BoardGeometry getGeometry() {
+        return geometry;
+    }
+
     @Override
     protected CrunchResult crunch(final List<Location> square, final List<? extends Location> witness, Iterator iterator, boolean calculateDistribution, BruteForceAnalysisModel bfa) {
 
-        this.logger.log(Logger.Level.DEBUG, "Crunching %d Mines in %d Tiles with %d Witnesses", iterator.getBalls(), square.size(), witness.size());
+        if (!quiet) {
+            this.logger.log(Logger.Level.DEBUG, "Crunching %d Mines in %d Tiles with %d Witnesses", iterator.getBalls(), square.size(), witness.size());
+        }
 
         // the distribution is the number of times a square reveals as the number 0-8
         BigInteger[][] bigDistribution = null;
@@ -1158,8 +1609,10 @@ public class ExtendedSolver extends Solver {
         int candidates = 0;
 
         // define work areas
-        workRestNotFlags = new boolean[witnessData.length];
-        workRestNotClear = new boolean[witnessData.length];
+        WorkArea work = workArea.get();
+        work.restNotFlags = new boolean[witnessData.length];
+        work.restNotClear = new boolean[witnessData.length];
+        work.solutions = (bfa == null) ? null : new SolutionSet(square);
 
         while (sample != null) {
 
@@ -1174,6 +1627,11 @@ public class ExtendedSolver extends Solver {
 
         }
 
+        if (work.solutions != null) {
+            crunchedSolutions.put(bfa, work.solutions);
+            work.solutions = null;
+        }
+
         BigInteger[] bigTally = new BigInteger[square.size()];
         for (int i = 0; i < bigTally.length; i++) {
             bigTally[i] = BigInteger.valueOf(tally[i]);
@@ -1220,6 +1678,10 @@ public class ExtendedSolver extends Solver {
         display(s);
         */
 
+        WorkArea work = workArea.get();
+        boolean[] workRestNotFlags = work.restNotFlags;
+        boolean[] workRestNotClear = work.restNotClear;
+
         for (int i = 0; i < witnessData.length; i++) {
             workRestNotFlags[i] = false;
             workRestNotClear[i] = false;
@@ -1323,6 +1785,9 @@ public class ExtendedSolver extends Solver {
 
             }
             bfa.addSolution(solution);
+            if (work.solutions != null) {
+                work.solutions.add(solution);
+            }
         }
 
         return true;
@@ -1331,20 +1796,26 @@ public class ExtendedSolver extends Solver {
     @Override
     protected SolutionCounter validatePosition(WitnessWeb wholeEdge, List<Location> mines, List<Location> noMines, Area deadLocations) {
 
-        // add the mines
+        SolutionCounter memoised = memo.getCounter(wholeEdge, mines, noMines, deadLocations);
+        if (memoised != null) {
+            return memoised;
+        }
+
+        // add the mines to an overlay, the shared board state is left untouched
+        BoardStateOverlay overlay = new BoardStateOverlay(this, boardState);
         for (Location mine: mines) {
-            boardState.setFlagConfirmed(mine);
+            overlay.setFlagConfirmed(mine);
         }
 
-        Area witnessed = boardState.getUnrevealedArea(wholeEdge.getPrunedWitnesses());
+        Area witnessed = memo.reduceWitnessedSquares(boardState, wholeEdge, mines);
 
-        WitnessWeb edge = new WitnessWeb(boardState, wholeEdge.getPrunedWitnesses(), witnessed.getLocations(), Logger.NO_LOGGING);
+        WitnessWeb edge = new WitnessWeb(overlay, wholeEdge.getPrunedWitnesses(), witnessed.getLocations(), Logger.NO_LOGGING);
 
-        int unrevealed = boardState.getTotalUnrevealedCount() - mines.size();  // this is less, because we have added some mines
+        int unrevealed = overlay.getTotalUnrevealedCount() - mines.size();  // this is less, because we have added some mines
 
-        int minesLeft = myGame.getMines() - boardState.getConfirmedFlagCount();
+        int minesLeft = myGame.getMines() - overlay.getConfirmedFlagCount();
 
-        SolutionCounter counter = new SolutionCounter(boardState, edge, unrevealed, minesLeft);
+        SolutionCounter counter = new SolutionCounter(overlay, edge, unrevealed, minesLeft);
 
         // add the no mines
         if (noMines != null) {
@@ -1356,36 +1827,313 @@ public class ExtendedSolver extends Solver {
 
         counter.process(deadLocations);
 
-        // remove the mines
-        for (Location mine: mines) {
-            boardState.unsetFlagConfirmed(mine);
-        }
+        memo.putCounter(wholeEdge, mines, noMines, deadLocations, counter);
 
         return counter;
 
     }
 
+    /**
+     * Keep the trees and solutions held for later analyses charged to the {@link BruteForceGovernor}, and give back the
+     * rest of what was reserved during this analysis. A tree which is in the {@link BruteForceCache} is charged to the cache.
+     */
+    private void settleReservations() {
+
+        long held = 0;
+        if (bruteForceAnalysis != null) {
+            held = held + treeBytes(bruteForceAnalysis);
+        }
+        if (parallelAnalysis != null && !parallelAnalysis.isShared()) {
+            held = held + parallelAnalysis.getTreeBytes();
+        }
+        for (Map.Entry<SolutionSet, BruteForceAnalysisModel> entry: isolatedAnalyses.entrySet()) {
+            held = held + solutionBytes(entry.getKey()) + treeBytes(entry.getValue());
+        }
+        Set<SolutionSet> abandoned = new HashSet<>(abandonedAnalyses);
+        abandoned.addAll(abandonedParallelAnalyses);
+        for (SolutionSet solutions: abandoned) {
+            held = held + solutionBytes(solutions);
+        }
+
+        long available = heldBytes + reservedBytes.getAndSet(0);
+        if (held > available) {
+            BruteForceGovernor.charge(held - available);
+        } else {
+            BruteForceGovernor.release(available - held);
+        }
+        heldBytes = held;
+    }
+
+    private static long treeBytes(BruteForceAnalysisModel bfa) {
+        return BruteForceGovernor.positionBytes(bfa.getNodeCount(), bfa.getSolutionCount().min(BigInteger.valueOf(Integer.MAX_VALUE)).intValue());
+    }
+
+    private static long solutionBytes(SolutionSet solutions) {
+        return BruteForceGovernor.solutionBytes(solutions.size(), solutions.getSquares().size());
+    }
+
+    /**
+     * Drop the trees kept for later moves and give their memory back to the {@link BruteForceGovernor}.
+     * Call once the game is over.
+     */
+    public void finish() {
+        bruteForceAnalysis = null;
+        parallelAnalysis = null;
+        isolatedAnalyses.clear();
+        abandonedAnalyses.clear();
+        abandonedParallelAnalyses.clear();
+        settleReservations();
+    }
+
+    /**
+     * Reserve room from the {@link BruteForceGovernor} for a brute force analysis of this many solutions over the squares.
+     * Once the current analysis has finished the room is given back, apart from what the trees kept for later need.
+     * @return false if there isn't room, the analysis should then be skipped in favour of the probability engine
+     */
+    private boolean reserveBruteForce(long solutions, int squares) {
+
+        long bytes = BruteForceGovernor.solutionBytes(solutions, squares)
+                + BruteForceGovernor.positionBytes(solutions * TREE_POSITIONS_PER_SOLUTION, (int) solutions);
+
+        if (!BruteForceGovernor.reserve(bytes)) {
+            if (!quiet) {
+                this.logger.log(Logger.Level.INFO, "Brute force analysis of %d solutions skipped, there is no room for it: %s", solutions, BruteForceGovernor.getStatus());
+            }
+            return false;
+        }
+
+        reservedBytes.addAndGet(bytes);
+        return true;
+    }
+
+    /**
+     * Search the solutions the brute force analysis was given with the parallel analysis, unless the endgame is in the
+     * {@link BruteForceCache}. A search which completes is added to the cache.
+     * @return the completed analysis, or null if there are no solutions to search or it couldn't be completed
+     */
+    private ParallelBruteForceAnalysis runParallelAnalysis(BruteForceAnalysisModel bfa) {
+
+        SolutionSet solutions = crunchedSolutions.get(bfa);
+        if (solutions == null || bfa.tooMany()) {  // if there were too many the solutions are incomplete
+            return null;
+        }
+        if (abandonedParallelAnalyses.contains(solutions)) {
+            return null;
+        }
+
+        ParallelBruteForceAnalysis result = new ParallelBruteForceAnalysis(solutions, ANALYSIS_POOL);
+        result.process();
+
+        if (!result.isComplete()) {
+            if (!quiet) {
+                this.logger.log(Logger.Level.INFO, "Game %s Abandoned the Parallel Brute Force Analysis after %d positions", myGame.showGameKey(), result.getNodeCount());
+            }
+            abandonedParallelAnalyses.add(solutions);
+            return null;
+        }
+
+        return result;
+    }
+
+    // the coach display isn't thread safe, so this is only called from the solver's own thread
+    private void showParallelAnalysis(ParallelBruteForceAnalysis solved) {
+        if (!quiet) {
+            newLine("Built parallel probability tree from " + solved.getSolutionCount() + " solutions in " + solved.getNodeCount() + " positions, "
+                    + solved.getWinningLines() + " can be won");
+        }
+    }
+
+    /**
+     * Find the solutions for each isolated edge and build their brute force analysis trees, spread across the analysis pool.
+     * An edge which has already been analysed, and hasn't been played in since, reuses the earlier analysis, and one
+     * whose analysis was abandoned isn't tried again.
+     * @return for each edge the completed analysis, or null if it couldn't be completed
+     */
+    private List<BruteForceAnalysisModel> analyseIsolatedEdges(List<BruteForce> crunchers) {
+
+        Function<BruteForce, BruteForceAnalysisModel> analyse = cruncher -> {
+
+            // determine all possible solutions
+            cruncher.process();
+            if (!cruncher.hasRun()) {
+                this.logger.log(Logger.Level.WARN, "Game %s Brute Force did not run", myGame.showGameKey());
+                return null;
+            }
+
+            // determine best way to solver them
+            BruteForceAnalysisModel bfa = cruncher.getBruteForceAnalysis();
+            if (bfa == null) {
+                this.logger.log(Logger.Level.WARN, "Game %s Brute Force analysis class is null", myGame.showGameKey());
+                return null;
+            }
+
+            SolutionSet solutions = crunchedSolutions.get(bfa);
+            if (solutions != null) {
+                BruteForceAnalysisModel cached = isolatedAnalyses.get(solutions);
+                if (cached != null) {
+                    return cached;
+                }
+                if (abandonedAnalyses.contains(solutions)) {
+                    return null;
+                }
+            }
+
+            if (solutions != null && !reserveBruteForce(solutions.size(), solutions.getSquares().size())) {
+                return null;
+            }
+
+            // the parallel analysis caches the tree, so it is tried first and the upstream analysis only if it gives up
+            ParallelBruteForceAnalysis solved = runParallelAnalysis(bfa);
+            if (solved != null) {
+                solvedEndgames.put(bfa, solved);
+                return bfa;
+            }
+
+            bfa.process();
+
+            // if after trying to process the data we can't complete then abandon it
+            if (!bfa.isComplete()) {
+                this.logger.log(Logger.Level.WARN, "%s Abandoned the Brute Force Analysis after %d steps", myGame.showGameKey(), bfa.getNodeCount() );
+                if (solutions != null) {
+                    abandonedAnalyses.add(solutions);
+                }
+                return null;
+            }
+
+            if (solutions != null) {
+                isolatedAnalyses.put(solutions, bfa);
+            }
+            return bfa;
+        };
+
+        List<BruteForceAnalysisModel> result;
+        if (crunchers.size() == 1) {
+            result = Collections.singletonList(analyse.apply(crunchers.get(0)));
+        } else {
+            // the parallel stream keeps encounter order, so the smallest edge is still looked at first
+            try {
+                result = ANALYSIS_POOL.submit(() -> crunchers.parallelStream().map(analyse).collect(Collectors.toList())).get();
+            } catch (InterruptedException | ExecutionException e) {
+                this.logger.log(Logger.Level.WARN, "Game %s parallel isolated edge analysis failed: %s", myGame.showGameKey(), e);
+                result = Collections.emptyList();
+            }
+        }
+
+        // the edges were analysed on the pool, so the trees they built are only shown now
+        for (BruteForceAnalysisModel bfa: result) {
+            ParallelBruteForceAnalysis solved = (bfa == null) ? null : solvedEndgames.get(bfa);
+            if (solved != null) {
+                showParallelAnalysis(solved);
+            }
+        }
+
+        // an edge which is no longer on the board won't come round again, so don't hold on to its solutions
+        abandonedAnalyses.retainAll(crunchedSolutions.values());
+        abandonedParallelAnalyses.retainAll(crunchedSolutions.values());
+
+        return result;
+    }
+
+    /**
+     * Run the probability engine for every value each candidate could reveal, spread across the analysis pool.
+     * The results are held until the location evaluator asks for them via {@link #runProbabilityEngine(WitnessWeb, Location, int)}.
+     */
+    private void prefetchOutcomes(WitnessWeb wholeEdge, List<? extends Location> candidates) {
+
+        if (candidates.size() < PARALLEL_CANDIDATE_MINIMUM) {
+            return;
+        }
+
+        // build the (location, value) outcomes in candidate order
+        List<Location> outcomeLocations = new ArrayList<>();
+        List<Integer> outcomeValues = new ArrayList<>();
+        for (Location location: candidates) {
+            if (memo.hasOutcomes(wholeEdge, location)) {
+                continue;
+            }
+            int flags = boardState.countAdjacentConfirmedFlags(location);
+            int free = boardState.countAdjacentUnrevealed(location);
+            for (int value = flags; value <= flags + free && value <= 8; value++) {
+                outcomeLocations.add(location);
+                outcomeValues.add(value);
+            }
+        }
+
+        // make sure the edge's witnessed squares are known before the outcomes are evaluated concurrently
+        memo.getWitnessedSquares(boardState, wholeEdge);
+
+        long nanoStart = System.nanoTime();
+
+        // the parallel stream keeps encounter order, so the results are gathered deterministically
+        List<RunPeResult> results;
+        try {
+            results = ANALYSIS_POOL.submit(() -> IntStream.range(0, outcomeLocations.size()).parallel()
+                    .mapToObj(i -> {
+                        try {
+                            return evaluateProbabilityEngine(wholeEdge, outcomeLocations.get(i), outcomeValues.get(i));
+                        } catch (RuntimeException e) {
+                            this.logger.log(Logger.Level.WARN, "Game %s parallel evaluation of %s revealing %d failed: %s",
+                                    myGame.showGameKey(), outcomeLocations.get(i), outcomeValues.get(i), e);
+                            return null;  // leave it for the evaluator to run sequentially
+                        }
+                    })
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException | ExecutionException e) {
+            this.logger.log(Logger.Level.WARN, "Game %s parallel outcome evaluation failed: %s", myGame.showGameKey(), e);
+            return;
+        }
+
+        for (int i=0; i < results.size(); i++) {
+            if (results.get(i) != null) {
+                memo.putOutcome(wholeEdge, outcomeLocations.get(i), outcomeValues.get(i), results.get(i));
+            }
+        }
+
+        if (!quiet) {
+            this.logger.log(Logger.Level.INFO, "Evaluated %d outcomes for %d candidates in parallel in %d milliseconds",
+                    outcomeLocations.size(), candidates.size(), (System.nanoTime() - nanoStart) / 1000000);
+        }
+
+    }
+
     @Override
     protected RunPeResult runProbabilityEngine(WitnessWeb wholeEdge, Location location, int value) {
 
-        // make the move
-        boardState.setWitnessValue(location, value);
+        RunPeResult result = memo.getOutcome(wholeEdge, location, value);
+        if (result == null) {
+            result = evaluateProbabilityEngine(wholeEdge, location, value);
+            if (value >= 0 && value <= 8) {
+                memo.putOutcome(wholeEdge, location, value, result);
+            }
+        }
+
+        return result;
+
+    }
+
+    // this doesn't touch the shared board state, so it is safe to run for several outcomes at once
+    private RunPeResult evaluateProbabilityEngine(WitnessWeb wholeEdge, Location location, int value) {
+
+        // make the move on an overlay, the shared board state is left untouched
+        BoardStateOverlay overlay = new BoardStateOverlay(this, boardState);
+        overlay.setWitnessValue(location, value);
 
         // create a new list of witnesses
         List<Location> witnesses = new ArrayList<>(wholeEdge.getPrunedWitnesses().size() + 1);
         witnesses.addAll(wholeEdge.getPrunedWitnesses());
         witnesses.add(location);
 
-        Area witnessed = boardState.getUnrevealedArea(witnesses);
+        // extend the edge's witnessed squares by the new witness rather than recalculating them all
+        Area witnessed = memo.extendWitnessedSquares(boardState, wholeEdge, overlay, location);
 
-        WitnessWeb edge = new WitnessWeb(boardState, witnesses, witnessed.getLocations(), Logger.NO_LOGGING);
+        WitnessWeb edge = new WitnessWeb(overlay, witnesses, witnessed.getLocations(), Logger.NO_LOGGING);
 
-        int unrevealed = boardState.getTotalUnrevealedCount() - 1;  // this is one less, because we have added a witness
+        int unrevealed = overlay.getTotalUnrevealedCount() - 1;  // this is one less, because we have added a witness
 
-        int minesLeft = myGame.getMines() - boardState.getConfirmedFlagCount();
+        int minesLeft = myGame.getMines() - overlay.getConfirmedFlagCount();
 
         RunPeResult result = new RunPeResult();
-        result.pe = new ProbabilityEngineFast(boardState, edge, unrevealed, minesLeft);
+        result.pe = new ProbabilityEngineFast(overlay, edge, unrevealed, minesLeft);
 
         result.pe.process();
 
@@ -1399,9 +2147,6 @@ public class ExtendedSolver extends Solver {
     	 }
 		 */
 
-        // undo the move
-        boardState.clearWitness(location);
-
         return result;
 
     }
@@ -5,8 +5,8 @@ import minesweeper.solver.settings.SolverSettings;
 import minesweeper.structure.Action;
 import minesweeper.structure.Location;
 
-import static java.lang.Math.max;
-import static java.lang.Math.min;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Goal: Make solver which acts like good human player playing high difficulty boards.
@@ -19,29 +19,31 @@ import static java.lang.Math.min;
 public class HumanlySolver extends ExtendedSolver {
     public HumanlySolver(GameStateModel myGame, SolverSettings preferences, boolean interactive) {
         super(myGame, preferences, interactive);
+        setOneMoveAtATime(true);
     }
 
     public double distanceFromEdge(Location location) {
-        int height = this.getGame().getHeight();
-        int width = this.getGame().getWidth();
-        int resultHeight = min(height - 1 - location.y, location.y);
-        int resultWidth = min(width - 1 - location.x, location.x);
-        return min(resultHeight, resultWidth) + 0.0001 * max(resultHeight, resultWidth);
+        return getGeometry().getDistanceFromEdge(getGeometry().index(location));
     }
 
     @Override
-    public Action[] getResult() {
-        Action[] candidates = super.getResult();
+    protected Action selectQueuedMove(List<Action> queue) {
         Action bestCandidate = null;
         double bestResult = 0;
-        for (Action candidate : candidates) {
+        for (Action candidate : queue) {
             double result = distanceFromEdge(candidate);
             if (bestCandidate == null || result < bestResult) {
                 bestResult = result;
                 bestCandidate = candidate;
             }
         }
-        return new Action[]{bestCandidate};
+        return bestCandidate;
+    }
+
+    @Override
+    public Action[] getResult() {
+        Action[] candidates = super.getResult();
+        return new Action[]{selectQueuedMove(Arrays.asList(candidates))};
     }
 
 
@@ -0,0 +1,559 @@
+package minesweeper.solver;
+
+import minesweeper.structure.Location;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A probability engine which works with double precision log-weights instead of BigInteger / BigDecimal.
+ *
+ * Tiles on the edge are grouped into boxes (tiles with the same witnesses), the boxes are grouped into independent
+ * components and the mine counts for each component are enumerated. The components are then combined with the
+ * off edge tiles using log-space convolution.
+ *
+ * Whether a tile can be a mine (or can be clear) is tracked exactly, so certain clears and mines are reliable. The
+ * weights are only accurate to double precision, so the engine doesn't report probabilities, the exact engine is
+ * still used to pick between guesses.
+ *
+ * If a component needs more than {@link #MAX_NODES} steps to enumerate the engine gives up, see {@link #isComplete()}.
+ *
+ * The components don't share anything while they are enumerated, so given a pool (see {@link #setPool(ForkJoinPool)})
+ * they are enumerated concurrently.
+ *
+ * If the solutions are kept (see {@link #setKeepSolutions(boolean)}) the engine can also draw mine layouts uniformly
+ * from all those consistent with the board, see {@link #sample(Random, List)}.
+ */
+public class LogProbabilityEngine {
+
+    final static int MAX_NODES = 200000;
+
+    // below this many boxes the enumeration is too quick to be worth spreading over the pool
+    final static int PARALLEL_BOX_MINIMUM = 16;
+
+    private static volatile double[] logFactorial = new double[] {0d};
+
+    private static class Box {
+        private final List<Location> tiles = new ArrayList<>();
+        private final List<Integer> witnesses;
+        private int component = -1;
+        private int index;   // position within the component
+
+        private Box(List<Integer> witnesses) {
+            this.witnesses = witnesses;
+        }
+    }
+
+    private static class Component {
+        private final List<Box> boxes = new ArrayList<>();
+        private int maxMines = 0;
+
+        // indexed by the number of mines in the component
+        private double[] logWeight;        // log of the number of ways of placing that many mines
+        private boolean[][] canBeMine;
+        private boolean[][] canBeClear;
+
+        // log weight of all the other components and the off edge tiles, indexed by the mines in this component
+        private double[] logRest;
+
+        // the mines in each box of every solution, indexed by the number of mines in the component. Only when kept
+        private List<List<int[]>> solutions;
+
+        // counted per component so components can be enumerated at the same time
+        private long nodes = 0;
+    }
+
+    private final List<? extends Location> witnesses;
+    private final int[] witnessMines;
+    private final Collection<Location> squares;
+    private final int offEdge;
+    private final int minesLeft;
+
+    private final List<Box> boxes = new ArrayList<>();
+    private final List<Component> components = new ArrayList<>();
+
+    private boolean complete = false;
+    private long nodes = 0;
+
+    private final List<Location> certainClears = new ArrayList<>();
+    private final List<Location> certainMines = new ArrayList<>();
+
+    private long duration;
+
+    private ForkJoinPool pool;
+
+    // for sampling, the log weight of each number of mines on the edge and off it
+    private boolean keepSolutions = false;
+    private double[] logEdge;
+    private double[] logOffEdge;
+    private double[][] logSuffix;
+
+    /**
+     * @param witnesses the witnesses on the edge
+     * @param witnessMines for each witness, the number of mines still to be found next to it
+     * @param squares the unrevealed tiles next to the witnesses
+     * @param offEdge the number of unrevealed tiles not next to a witness
+     * @param minesLeft the number of mines still to be found
+     */
+    public LogProbabilityEngine(List<? extends Location> witnesses, int[] witnessMines, Collection<Location> squares, int offEdge, int minesLeft) {
+        this.witnesses = witnesses;
+        this.witnessMines = witnessMines;
+        this.squares = squares;
+        this.offEdge = offEdge;
+        this.minesLeft = minesLeft;
+    }
+
+    /**
+     * Build an engine for the solver's view of the board.
+     */
+    public static LogProbabilityEngine fromBoard(BoardState boardState, List<? extends Location> witnesses, Collection<Location> squares, int unrevealed, int minesLeft) {
+        int[] witnessMines = new int[witnesses.size()];
+        for (int i=0; i < witnesses.size(); i++) {
+            Location witness = witnesses.get(i);
+            witnessMines[i] = boardState.getWitnessValue(witness) - boardState.countAdjacentConfirmedFlags(witness);
+        }
+        return new LogProbabilityEngine(witnesses, witnessMines, squares, unrevealed - squares.size(), minesLeft);
+    }
+
+    /**
+     * Enumerate independent components concurrently on this pool
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Keep every solution of every component, so mine layouts can be sampled once the engine has run
+     */
+    public void setKeepSolutions(boolean keepSolutions) {
+        this.keepSolutions = keepSolutions;
+    }
+
+    public void process() {
+
+        long start = System.currentTimeMillis();
+
+        if (minesLeft < 0) {
+            return;
+        }
+
+        buildBoxes();
+
+        boolean enumerated = enumerateAll();
+
+        for (Component component: components) {
+            nodes = nodes + component.nodes;
+        }
+
+        if (!enumerated) {
+            duration = System.currentTimeMillis() - start;
+            return;
+        }
+
+        combine();
+
+        duration = System.currentTimeMillis() - start;
+    }
+
+    // group the tiles by the witnesses next to them, and the boxes by the witnesses they share
+    private void buildBoxes() {
+
+        Map<List<Integer>, Box> byWitnesses = new LinkedHashMap<>();
+        for (Location square: squares) {
+            List<Integer> adjacent = new ArrayList<>();
+            for (int i=0; i < witnesses.size(); i++) {
+                if (witnesses.get(i).isAdjacent(square)) {
+                    adjacent.add(i);
+                }
+            }
+            Box box = byWitnesses.computeIfAbsent(adjacent, Box::new);
+            box.tiles.add(square);
+        }
+        boxes.addAll(byWitnesses.values());
+
+        // boxes sharing a witness are in the same component, built breadth first so witnesses close early during enumeration
+        List<List<Box>> boxesOfWitness = new ArrayList<>();
+        for (int i=0; i < witnesses.size(); i++) {
+            boxesOfWitness.add(new ArrayList<>());
+        }
+        for (Box box: boxes) {
+            for (int w: box.witnesses) {
+                boxesOfWitness.get(w).add(box);
+            }
+        }
+
+        for (Box seed: boxes) {
+            if (seed.component != -1) {
+                continue;
+            }
+            Component component = new Component();
+            seed.component = components.size();
+            component.boxes.add(seed);
+            for (int i=0; i < component.boxes.size(); i++) {
+                Box box = component.boxes.get(i);
+                box.index = i;
+                component.maxMines += box.tiles.size();
+                for (int w: box.witnesses) {
+                    for (Box other: boxesOfWitness.get(w)) {
+                        if (other.component == -1) {
+                            other.component = seed.component;
+                            component.boxes.add(other);
+                        }
+                    }
+                }
+            }
+            components.add(component);
+        }
+
+        int largest = Math.max(offEdge, 1);
+        for (Box box: boxes) {
+            largest = Math.max(largest, box.tiles.size());
+        }
+        ensureLogFactorial(largest);
+    }
+
+    private boolean enumerateAll() {
+
+        if (pool != null && components.size() > 1 && boxes.size() >= PARALLEL_BOX_MINIMUM) {
+            // the log factorial table has already been sized by buildBoxes, so the components only read shared data
+            try {
+                return pool.submit(() -> components.parallelStream().allMatch(this::enumerate)).get();
+            } catch (InterruptedException | ExecutionException e) {
+                return false;
+            }
+        }
+
+        for (Component component: components) {
+            if (!enumerate(component)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // enumerate the mine counts of each box in the component, respecting the witnesses
+    private boolean enumerate(Component component) {
+
+        int n = component.boxes.size();
+        component.logWeight = new double[component.maxMines + 1];
+        component.canBeMine = new boolean[component.maxMines + 1][n];
+        component.canBeClear = new boolean[component.maxMines + 1][n];
+        Arrays.fill(component.logWeight, Double.NEGATIVE_INFINITY);
+        if (keepSolutions) {
+            component.solutions = new ArrayList<>();
+            for (int m=0; m <= component.maxMines; m++) {
+                component.solutions.add(new ArrayList<>());
+            }
+        }
+
+        int[] remaining = witnessMines.clone();
+        int[] capacity = new int[witnesses.size()];
+        for (Box box: component.boxes) {
+            for (int w: box.witnesses) {
+                capacity[w] += box.tiles.size();
+            }
+        }
+
+        return enumerate(component, 0, new int[n], 0, 0d, remaining, capacity);
+    }
+
+    private boolean enumerate(Component component, int position, int[] mines, int total, double logWeight, int[] remaining, int[] capacity) {
+
+        if (++component.nodes > MAX_NODES) {
+            return false;
+        }
+
+        if (position == component.boxes.size()) {
+            component.logWeight[total] = logAdd(component.logWeight[total], logWeight);
+            for (int i=0; i < mines.length; i++) {
+                int size = component.boxes.get(i).tiles.size();
+                if (mines[i] > 0) {
+                    component.canBeMine[total][i] = true;
+                }
+                if (mines[i] < size) {
+                    component.canBeClear[total][i] = true;
+                }
+            }
+            if (component.solutions != null) {
+                component.solutions.get(total).add(mines.clone());
+            }
+            return true;
+        }
+
+        Box box = component.boxes.get(position);
+        int size = box.tiles.size();
+
+        for (int w: box.witnesses) {
+            capacity[w] -= size;
+        }
+
+        boolean result = true;
+        for (int k=0; k <= size && result; k++) {
+            boolean valid = true;
+            for (int w: box.witnesses) {
+                int left = remaining[w] - k;
+                if (left < 0 || left > capacity[w]) {
+                    valid = false;
+                    break;
+                }
+            }
+            if (!valid) {
+                continue;
+            }
+            for (int w: box.witnesses) {
+                remaining[w] -= k;
+            }
+            mines[position] = k;
+            result = enumerate(component, position + 1, mines, total + k, logWeight + logCombination(size, k), remaining, capacity);
+            for (int w: box.witnesses) {
+                remaining[w] += k;
+            }
+        }
+
+        for (int w: box.witnesses) {
+            capacity[w] += size;
+        }
+
+        return result;
+    }
+
+    // combine the components with the off edge tiles
+    private void combine() {
+
+        // log weight of placing the mines not on the edge off the edge
+        logOffEdge = new double[minesLeft + 1];
+        for (int m=0; m <= minesLeft; m++) {
+            int off = minesLeft - m;
+            logOffEdge[m] = (off <= offEdge) ? logCombination(offEdge, off) : Double.NEGATIVE_INFINITY;
+        }
+
+        double[] all = convolve(components, null);
+        logEdge = all;
+
+        double logTotal = Double.NEGATIVE_INFINITY;
+        for (int m=0; m < all.length && m <= minesLeft; m++) {
+            logTotal = logAdd(logTotal, all[m] + logOffEdge[m]);
+        }
+
+        // no valid solutions, so nothing is known
+        if (logTotal == Double.NEGATIVE_INFINITY) {
+            return;
+        }
+
+        for (Component component: components) {
+            double[] others = convolve(components, component);
+            component.logRest = new double[component.maxMines + 1];
+            for (int m=0; m <= component.maxMines; m++) {
+                double rest = Double.NEGATIVE_INFINITY;
+                for (int o=0; o < others.length && m + o <= minesLeft; o++) {
+                    rest = logAdd(rest, others[o] + logOffEdge[m + o]);
+                }
+                component.logRest[m] = rest;
+            }
+
+            for (Box box: component.boxes) {
+                int i = box.index;
+                boolean mine = false;
+                boolean clear = false;
+                for (int m=0; m <= component.maxMines; m++) {
+                    if (component.logWeight[m] == Double.NEGATIVE_INFINITY || component.logRest[m] == Double.NEGATIVE_INFINITY) {
+                        continue;   // this many mines in the component can't happen
+                    }
+                    mine = mine || component.canBeMine[m][i];
+                    clear = clear || component.canBeClear[m][i];
+                }
+                for (Location tile: box.tiles) {
+                    if (!mine) {
+                        certainClears.add(tile);
+                    } else if (!clear) {
+                        certainMines.add(tile);
+                    }
+                }
+            }
+        }
+
+        complete = true;
+    }
+
+    /**
+     * Draw a mine layout uniformly from all those consistent with the board. The engine must have kept its solutions
+     * and be complete. Not thread safe.
+     * @param mines the tiles on the edge which are mines in the layout are added to this
+     * @return the number of mines in the layout off the edge, to be placed uniformly among the off edge tiles
+     */
+    public int sample(Random random, List<Location> mines) {
+
+        if (!keepSolutions || !complete) {
+            throw new IllegalStateException("Sampling needs a complete engine which has kept its solutions");
+        }
+
+        // the weight of the mines left in components i onwards
+        if (logSuffix == null) {
+            logSuffix = new double[components.size() + 1][];
+            for (int i=0; i <= components.size(); i++) {
+                logSuffix[i] = convolve(components.subList(i, components.size()), null);
+            }
+        }
+
+        // how many mines are on the edge, then how many in each component given those left for the rest
+        double[] weights = new double[Math.min(logEdge.length, minesLeft + 1)];
+        for (int m=0; m < weights.length; m++) {
+            weights[m] = logEdge[m] + logOffEdge[m];
+        }
+        int edgeMines = pick(weights, random);
+
+        int left = edgeMines;
+        for (int i=0; i < components.size(); i++) {
+            Component component = components.get(i);
+            double[] rest = logSuffix[i + 1];
+            weights = new double[Math.min(component.maxMines, left) + 1];
+            for (int m=0; m < weights.length; m++) {
+                weights[m] = (left - m < rest.length) ? component.logWeight[m] + rest[left - m] : Double.NEGATIVE_INFINITY;
+            }
+            int componentMines = pick(weights, random);
+            left = left - componentMines;
+
+            // a solution with that many mines, each counting as the number of ways of placing its mines in the boxes
+            List<int[]> solutions = component.solutions.get(componentMines);
+            weights = new double[solutions.size()];
+            for (int s=0; s < weights.length; s++) {
+                int[] boxMines = solutions.get(s);
+                for (Box box: component.boxes) {
+                    weights[s] += logCombination(box.tiles.size(), boxMines[box.index]);
+                }
+            }
+            int[] boxMines = solutions.get(pick(weights, random));
+
+            // and which tiles in each box
+            for (Box box: component.boxes) {
+                List<Location> tiles = new ArrayList<>(box.tiles);
+                for (int k=0; k < boxMines[box.index]; k++) {
+                    int j = k + random.nextInt(tiles.size() - k);
+                    mines.add(tiles.get(j));
+                    tiles.set(j, tiles.get(k));
+                }
+            }
+        }
+
+        return minesLeft - edgeMines;
+    }
+
+    // an index drawn with chance proportional to exp of its log weight
+    private static int pick(double[] logWeights, Random random) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double w: logWeights) {
+            max = Math.max(max, w);
+        }
+        double total = 0d;
+        for (double w: logWeights) {
+            total = total + Math.exp(w - max);
+        }
+        double target = random.nextDouble() * total;
+        int last = 0;
+        for (int i=0; i < logWeights.length; i++) {
+            if (logWeights[i] == Double.NEGATIVE_INFINITY) {
+                continue;
+            }
+            last = i;
+            target = target - Math.exp(logWeights[i] - max);
+            if (target < 0) {
+                return i;
+            }
+        }
+        return last;
+    }
+
+    // the log weight of each total number of mines over the components, leaving out the excluded one
+    private double[] convolve(List<Component> components, Component excluded) {
+        double[] result = new double[] {0d};
+        for (Component component: components) {
+            if (component == excluded) {
+                continue;
+            }
+            double[] next = new double[result.length + component.maxMines];
+            Arrays.fill(next, Double.NEGATIVE_INFINITY);
+            for (int a=0; a < result.length; a++) {
+                if (result[a] == Double.NEGATIVE_INFINITY) {
+                    continue;
+                }
+                for (int b=0; b <= component.maxMines; b++) {
+                    if (component.logWeight[b] != Double.NEGATIVE_INFINITY) {
+                        next[a + b] = logAdd(next[a + b], result[a] + component.logWeight[b]);
+                    }
+                }
+            }
+            result = next;
+        }
+        return result;
+    }
+
+    private static double logAdd(double a, double b) {
+        if (a == Double.NEGATIVE_INFINITY) {
+            return b;
+        }
+        if (b == Double.NEGATIVE_INFINITY) {
+            return a;
+        }
+        if (a > b) {
+            return a + Math.log1p(Math.exp(b - a));
+        } else {
+            return b + Math.log1p(Math.exp(a - b));
+        }
+    }
+
+    private static double logCombination(int n, int k) {
+        double[] table = logFactorial;
+        return table[n] - table[k] - table[n - k];
+    }
+
+    private static synchronized void ensureLogFactorial(int n) {
+        if (logFactorial.length > n) {
+            return;
+        }
+        double[] table = Arrays.copyOf(logFactorial, n + 1);
+        for (int i = logFactorial.length; i <= n; i++) {
+            table[i] = table[i - 1] + Math.log(i);
+        }
+        logFactorial = table;
+    }
+
+    /**
+     * @return true if the enumeration finished and there is at least one solution
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return the tiles on the edge which are never a mine, decided exactly
+     */
+    public List<Location> getCertainClears() {
+        return certainClears;
+    }
+
+    /**
+     * @return the tiles on the edge which are always a mine, decided exactly
+     */
+    public List<Location> getCertainMines() {
+        return certainMines;
+    }
+
+    public int getIndependentGroups() {
+        return components.size();
+    }
+
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+}
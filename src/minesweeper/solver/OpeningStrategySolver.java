@@ -5,24 +5,93 @@ import minesweeper.gamestate.GameStateModel;
 import minesweeper.solver.settings.SolverSettings;
 import minesweeper.structure.Action;
 import minesweeper.structure.Location;
+import minesweeper.util.BoardGeometry;
+import minesweeper.util.ZobristHash;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class OpeningStrategySolver extends Solver{
     Map<GameStateFuzzy, Location> openingStrategy;
 
+    // a move from the opening strategy, with the symmetry which gave its state's key
+    private static class BookMove {
+        final Location location;
+        final int keySymmetry;
+
+        BookMove(Location location, int keySymmetry) {
+            this.location = location;
+            this.keySymmetry = keySymmetry;
+        }
+    }
+
+    /**
+     * The opening strategy keyed by zobrist key, so the board doesn't have to be scanned to look a state up.
+     * Build it once and give it to every solver playing the strategy.
+     */
+    public static class Book {
+        // the last book built from a strategy map, solvers given the same map share it
+        private static volatile Book last;
+
+        private final Map<GameStateFuzzy, Location> openingStrategy;
+        private final Map<Long, BookMove> moves = new HashMap<>();
+
+        public Book(Map<GameStateFuzzy, Location> openingStrategy) {
+            this.openingStrategy = openingStrategy;
+            for (Map.Entry<GameStateFuzzy, Location> entry: openingStrategy.entrySet()) {
+                ZobristHash stateHash = entry.getKey().getZobristHash();
+                moves.put(stateHash.getKey(), new BookMove(entry.getValue(), stateHash.getKeySymmetry()));
+            }
+        }
+
+        private static Book of(Map<GameStateFuzzy, Location> openingStrategy) {
+            Book book = last;
+            if (book == null || book.openingStrategy != openingStrategy) {
+                book = new Book(openingStrategy);
+                last = book;
+            }
+            return book;
+        }
+    }
+
+    private final Book book;
+    private final ZobristHash hash;
+    private List<Action> played = Collections.emptyList();
+
     public OpeningStrategySolver(GameStateModel myGame, SolverSettings preferences, boolean interactive,
                                  Map<GameStateFuzzy, Location> openingStrategy) {
+        this(myGame, preferences, interactive, Book.of(openingStrategy));
+    }
+
+    public OpeningStrategySolver(GameStateModel myGame, SolverSettings preferences, boolean interactive, Book book) {
         super(myGame, preferences, interactive);
-        this.openingStrategy = openingStrategy;
+        this.openingStrategy = book.openingStrategy;
+        this.book = book;
+        this.hash = new ZobristHash(BoardGeometry.of(myGame.getWidth(), myGame.getHeight()));
+        this.hash.rebuild(myGame);
     }
 
     @Override
     public Action[] getResult() {
-        GameStateFuzzy state = new GameStateFuzzy(getGame());
-        if (openingStrategy.containsKey(state)) {
-            return new Action[]{new Action(openingStrategy.get(state), Action.CLEAR)};
+        // only the tiles the last moves revealed need adding to the hash
+        hash.update(getGame(), played);
+
+        Action[] result;
+        BookMove move = book.moves.get(hash.getKey());
+        if (move != null) {
+            // the move is for the state the way round it was stored, turn it to match this game
+            BoardGeometry geometry = hash.getGeometry();
+            int symmetry = geometry.compose(hash.getKeySymmetry(), geometry.invert(move.keySymmetry));
+            Location location = geometry.getLocation(geometry.getSymmetry(symmetry)[geometry.index(move.location)]);
+            result = new Action[]{new Action(location, Action.CLEAR)};
+        } else {
+            result = super.getResult();
         }
-        return super.getResult();
+
+        played = Arrays.asList(result);
+        return result;
     }
 }
@@ -0,0 +1,537 @@
+package minesweeper.solver;
+
+import minesweeper.gamestate.GameStateModel;
+import minesweeper.gamestate.MoveMethod;
+import minesweeper.structure.Action;
+import minesweeper.structure.Area;
+import minesweeper.structure.Location;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Brute force deep analysis of a set of candidate solutions, searching for the play which wins in the most solutions.
+ *
+ * A position is the set of solutions still consistent with what has been revealed, so positions reached by
+ * different move orders are the same position. They share a transposition table, which is safe to use from
+ * several threads at once. Candidate moves of positions with enough living solutions are searched across the pool,
+ * smaller positions are searched on the thread which reached them.
+ *
+ * The squares and solutions are put in a canonical order first: the symmetry of the board which gives the smallest
+ * layout, with the solutions sorted. The same endgame then always builds the same tree, which lets completed trees be
+ * shared through the {@link BruteForceCache}.
+ *
+ * Once processed the tree can be walked a move at a time with {@link #getNextMove(BoardState)}.
+ */
+public class ParallelBruteForceAnalysis {
+
+    // the most positions the search will solve before giving up
+    final static int MAX_POSITIONS = 500000;
+
+    // positions with fewer living solutions than this are searched on the current thread
+    final static int PARALLEL_SOLUTIONS_MINIMUM = 32;
+
+    // memory for the positions is reserved from the governor this many positions at a time
+    final static int RESERVE_CHUNK = 1024;
+
+    // the values a square can reveal, with the mine as the last one
+    private final static int VALUES = 10;
+    private final static int MINE = 9;
+
+    static class Node {
+        final int bestMove;      // the square to play, -1 if there are no living squares
+        final int winningLines;  // how many of the living solutions the best play wins
+
+        Node(int bestMove, int winningLines) {
+            this.bestMove = bestMove;
+            this.winningLines = winningLines;
+        }
+    }
+
+    private static class Move {
+        private final int square;
+        private final int safe;          // the number of living solutions where the square isn't a mine
+
+        private Move(int square, int safe) {
+            this.square = square;
+            this.safe = safe;
+        }
+    }
+
+    private final List<Location> squares;
+    private final byte[][] values;   // [solution][square], 0-8 or MINE
+    private final BruteForceCache.PositionKey key;
+    private final ForkJoinPool pool;
+
+    private Map<BitSet, Node> cache = new ConcurrentHashMap<>();
+    private boolean cached = false;
+    private boolean shared = false;  // the tree is the one in the cache, which other solvers may be walking
+    private final AtomicLong positions = new AtomicLong();
+    private final AtomicLong reserved = new AtomicLong();
+    private volatile boolean abandoned = false;
+
+    private boolean complete = false;
+    private int winningLines = 0;
+    private long duration;
+
+    // where we are when walking the tree
+    private BitSet current;
+    private int expectedSquare = -1;
+
+    public ParallelBruteForceAnalysis(SolutionSet solutions, ForkJoinPool pool) {
+        this.pool = pool;
+
+        List<Location> original = solutions.getSquares();
+        byte[][] originalValues = new byte[solutions.size()][];
+        for (int i=0; i < originalValues.length; i++) {
+            byte[] solution = solutions.getSolutions().get(i);
+            byte[] value = new byte[solution.length];
+            for (int j=0; j < solution.length; j++) {
+                value[j] = (solution[j] == GameStateModel.MINE) ? MINE : solution[j];
+            }
+            originalValues[i] = value;
+        }
+
+        // find the symmetry which gives the smallest layout and solutions
+        int[] bestOrder = null;
+        int[] bestGeometry = null;
+        byte[][] bestValues = null;
+        for (int symmetry=0; symmetry < 8; symmetry++) {
+            int[] order = canonicalOrder(original, symmetry);
+            int[] geometry = geometry(original, symmetry, order);
+            byte[][] ordered = reorder(originalValues, order);
+            if (bestOrder == null || compare(geometry, ordered, bestGeometry, bestValues) < 0) {
+                bestOrder = order;
+                bestGeometry = geometry;
+                bestValues = ordered;
+            }
+        }
+
+        List<Location> squares = new ArrayList<>(original.size());
+        for (int index: bestOrder) {
+            squares.add(original.get(index));
+        }
+        this.squares = squares;
+        this.values = bestValues;
+
+        byte[] flat = new byte[values.length * squares.size()];
+        for (int i=0; i < values.length; i++) {
+            System.arraycopy(values[i], 0, flat, i * squares.size(), squares.size());
+        }
+        this.key = new BruteForceCache.PositionKey(bestGeometry, flat);
+
+        this.current = new BitSet(values.length);
+        this.current.set(0, values.length);
+    }
+
+    // the squares sorted by where they are once the symmetry is applied
+    private static int[] canonicalOrder(List<Location> squares, int symmetry) {
+        Integer[] order = new Integer[squares.size()];
+        for (int i=0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt((Integer i) -> transformX(squares.get(i), symmetry)).thenComparingInt(i -> transformY(squares.get(i), symmetry)));
+
+        int[] result = new int[order.length];
+        for (int i=0; i < order.length; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    // the position of each square, in order, relative to the top left of the squares
+    private static int[] geometry(List<Location> squares, int symmetry, int[] order) {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        for (Location l: squares) {
+            minX = Math.min(minX, transformX(l, symmetry));
+            minY = Math.min(minY, transformY(l, symmetry));
+        }
+        int[] result = new int[order.length * 2];
+        for (int i=0; i < order.length; i++) {
+            Location l = squares.get(order[i]);
+            result[i * 2] = transformX(l, symmetry) - minX;
+            result[i * 2 + 1] = transformY(l, symmetry) - minY;
+        }
+        return result;
+    }
+
+    // bit 4 swaps the axes, bit 2 flips the rows and bit 1 flips the columns
+    private static int transformX(Location l, int symmetry) {
+        int x = ((symmetry & 4) == 0) ? l.x : l.y;
+        return ((symmetry & 1) == 0) ? x : -x;
+    }
+
+    private static int transformY(Location l, int symmetry) {
+        int y = ((symmetry & 4) == 0) ? l.y : l.x;
+        return ((symmetry & 2) == 0) ? y : -y;
+    }
+
+    // the solutions with their squares in the order given, and then sorted
+    private static byte[][] reorder(byte[][] values, int[] order) {
+        byte[][] result = new byte[values.length][];
+        for (int i=0; i < values.length; i++) {
+            byte[] value = new byte[order.length];
+            for (int j=0; j < order.length; j++) {
+                value[j] = values[i][order[j]];
+            }
+            result[i] = value;
+        }
+        Arrays.sort(result, ParallelBruteForceAnalysis::compare);
+        return result;
+    }
+
+    private static int compare(int[] geometry1, byte[][] values1, int[] geometry2, byte[][] values2) {
+        for (int i=0; i < geometry1.length; i++) {
+            if (geometry1[i] != geometry2[i]) {
+                return Integer.compare(geometry1[i], geometry2[i]);
+            }
+        }
+        for (int i=0; i < values1.length; i++) {
+            int result = compare(values1[i], values2[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private static int compare(byte[] value1, byte[] value2) {
+        for (int i=0; i < value1.length; i++) {
+            if (value1[i] != value2[i]) {
+                return Byte.compare(value1[i], value2[i]);
+            }
+        }
+        return 0;
+    }
+
+    public void process() {
+
+        long start = System.currentTimeMillis();
+
+        if (!loadFromCache()) {
+            winningLines = search(current);
+            complete = !abandoned;
+            if (complete && values.length > 1) {
+                shared = BruteForceCache.put(key, cache);
+            }
+        }
+
+        duration = System.currentTimeMillis() - start;
+    }
+
+    /**
+     * If this endgame has been solved before then use that tree
+     * @return true if the tree was found in the {@link BruteForceCache}, the analysis is then complete
+     */
+    public boolean loadFromCache() {
+
+        Map<BitSet, Node> solved = BruteForceCache.get(key);
+        if (solved == null || !solved.containsKey(current)) {
+            return false;
+        }
+
+        cache = solved;
+        cached = true;
+        shared = true;
+        winningLines = solved.get(current).winningLines;
+        complete = true;
+        return true;
+    }
+
+    // solve the position on the pool so its moves can be spread across it
+    private int search(BitSet position) {
+        try {
+            return pool.submit(() -> solve(position)).get();
+        } catch (InterruptedException | ExecutionException e) {
+            abandoned = true;
+            return 0;
+        } finally {
+            // once searched the tree is charged by whoever keeps it, the cache or the solver walking it
+            BruteForceGovernor.release(reserved.getAndSet(0));
+        }
+    }
+
+    private boolean reserveChunk() {
+        long bytes = BruteForceGovernor.positionBytes(RESERVE_CHUNK, values.length);
+        if (!BruteForceGovernor.reserve(bytes)) {
+            return false;
+        }
+        reserved.addAndGet(bytes);
+        return true;
+    }
+
+    private int solve(BitSet alive) {
+
+        int count = alive.cardinality();
+        if (count <= 1) {
+            return count;
+        }
+
+        Node known = cache.get(alive);
+        if (known != null) {
+            return known.winningLines;
+        }
+
+        if (abandoned) {
+            return 0;
+        }
+        long position = positions.incrementAndGet();
+        if (position > MAX_POSITIONS || (position % RESERVE_CHUNK == 1 && !reserveChunk())) {
+            abandoned = true;
+            return 0;
+        }
+
+        List<Move> moves = livingMoves(alive, count);
+
+        // nothing left to tell the solutions apart, so it comes down to a guess
+        if (moves.isEmpty()) {
+            cache.put(alive, new Node(-1, 1));
+            return 1;
+        }
+
+        // a move can't win more solutions than it survives, so look at the safest first
+        moves.sort(Comparator.comparingInt((Move m) -> m.safe).reversed());
+
+        int best = -1;
+        int bestLines = -1;
+        if (count >= PARALLEL_SOLUTIONS_MINIMUM && moves.size() > 1) {
+
+            // moves which can't reach the best found so far are skipped, ties are still looked at so the result doesn't depend on timing
+            AtomicInteger bestSoFar = new AtomicInteger(-1);
+            int[] lines = moves.parallelStream().mapToInt(move -> {
+                if (move.safe < bestSoFar.get()) {
+                    return -1;
+                }
+                int result = evaluate(alive, move.square);
+                bestSoFar.accumulateAndGet(result, Math::max);
+                return result;
+            }).toArray();
+
+            for (int i=0; i < lines.length; i++) {
+                if (lines[i] > bestLines) {
+                    bestLines = lines[i];
+                    best = moves.get(i).square;
+                }
+            }
+
+        } else {
+            for (Move move: moves) {
+                if (move.safe <= bestLines) {
+                    break;
+                }
+                int lines = evaluate(alive, move.square);
+                if (lines > bestLines) {
+                    bestLines = lines;
+                    best = move.square;
+                }
+            }
+        }
+
+        if (abandoned) {
+            return 0;
+        }
+
+        cache.put(alive, new Node(best, bestLines));
+        return bestLines;
+    }
+
+    // the squares which can reveal more than one value, or a single square which is safe in all of them
+    private List<Move> livingMoves(BitSet alive, int count) {
+
+        List<Move> moves = new ArrayList<>();
+        int[] tally = new int[VALUES];
+        for (int square=0; square < squares.size(); square++) {
+
+            for (int i = alive.nextSetBit(0); i >= 0; i = alive.nextSetBit(i + 1)) {
+                tally[values[i][square]]++;
+            }
+
+            int distinct = 0;
+            for (int v=0; v < VALUES; v++) {
+                if (tally[v] != 0) {
+                    distinct++;
+                    tally[v] = 0;
+                }
+            }
+
+            if (distinct > 1) {
+                int safe = count - countMines(alive, square);
+                // revealing a safe square can only help, so there is no need to look at anything else
+                if (safe == count) {
+                    moves.clear();
+                    moves.add(new Move(square, safe));
+                    return moves;
+                }
+                moves.add(new Move(square, safe));
+            }
+        }
+
+        return moves;
+    }
+
+    private int countMines(BitSet alive, int square) {
+        int mines = 0;
+        for (int i = alive.nextSetBit(0); i >= 0; i = alive.nextSetBit(i + 1)) {
+            if (values[i][square] == MINE) {
+                mines++;
+            }
+        }
+        return mines;
+    }
+
+    // the winning lines from playing the square, which is the sum over the values it can reveal
+    private int evaluate(BitSet alive, int square) {
+
+        BitSet[] split = new BitSet[MINE];
+        for (int i = alive.nextSetBit(0); i >= 0; i = alive.nextSetBit(i + 1)) {
+            int value = values[i][square];
+            if (value == MINE) {
+                continue;
+            }
+            if (split[value] == null) {
+                split[value] = new BitSet(values.length);
+            }
+            split[value].set(i);
+        }
+
+        int result = 0;
+        for (BitSet next: split) {
+            if (next != null) {
+                result = result + solve(next);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the best move from the current position, having followed the value revealed by the last move.
+     * Null if there is nothing left to decide or the board doesn't match any of the solutions.
+     */
+    public Action getNextMove(BoardState boardState) {
+
+        if (expectedSquare != -1) {
+            int revealed = boardState.getWitnessValue(squares.get(expectedSquare));
+            BitSet next = new BitSet(values.length);
+            for (int i = current.nextSetBit(0); i >= 0; i = current.nextSetBit(i + 1)) {
+                if (values[i][expectedSquare] == revealed) {
+                    next.set(i);
+                }
+            }
+            current = next;
+            expectedSquare = -1;
+        }
+
+        int count = current.cardinality();
+        if (count <= 1) {
+            return null;
+        }
+
+        Node node = cache.get(current);
+        if (node == null) {   // not reached by the search, but solving it from here is cheap
+            if (shared) {   // don't grow the cached tree under the other solvers, search a copy
+                cache = new ConcurrentHashMap<>(cache);
+                shared = false;
+            }
+            search(current);
+            node = cache.get(current);
+        }
+        if (node == null || node.bestMove == -1) {
+            return null;
+        }
+
+        expectedSquare = node.bestMove;
+
+        int safe = count - countMines(current, expectedSquare);
+        BigDecimal prob = BigDecimal.valueOf(safe).divide(BigDecimal.valueOf(count), MathContext.DECIMAL64);
+
+        return new Action(squares.get(expectedSquare), Action.CLEAR, MoveMethod.BRUTE_FORCE_DEEP_ANALYSIS, "", prob);
+    }
+
+    public Location getExpectedMove() {
+        if (expectedSquare == -1) {
+            return null;
+        }
+        return squares.get(expectedSquare);
+    }
+
+    /**
+     * @return the squares which never reveal anything new, they are either a mine or always show the same value
+     */
+    public Area getDeadLocations() {
+        Set<Location> result = new LinkedHashSet<>();
+        for (int square=0; square < squares.size(); square++) {
+            int value = -1;
+            boolean dead = true;
+            for (byte[] solution: values) {
+                if (solution[square] == MINE) {
+                    continue;
+                }
+                if (value != -1 && value != solution[square]) {
+                    dead = false;
+                    break;
+                }
+                value = solution[square];
+            }
+            if (dead) {
+                result.add(squares.get(square));
+            }
+        }
+        return new Area(result);
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return true if the tree came from the {@link BruteForceCache} rather than being searched
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * @return true if the tree is the one held by the {@link BruteForceCache}, which the cache is charged for
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * @return the estimated memory held by the tree, see {@link BruteForceGovernor}
+     */
+    public long getTreeBytes() {
+        return BruteForceGovernor.positionBytes(cache.size(), values.length)
+                + BruteForceGovernor.solutionBytes(values.length, squares.size());
+    }
+
+    public int getSolutionCount() {
+        return values.length;
+    }
+
+    public int getWinningLines() {
+        return winningLines;
+    }
+
+    public long getNodeCount() {
+        return positions.get();
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+}
@@ -0,0 +1,69 @@
+package minesweeper.solver;
+
+import minesweeper.structure.Location;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The candidate solutions a crunch handed to a {@link BruteForceAnalysisModel}, in the order they were found.
+ * Each solution holds, for every square, the value it would reveal (or a mine count, which the analysis ignores).
+ *
+ * Two sets are equal when they cover the same squares with the same solutions, in which case the analysis
+ * built from one is also valid for the other.
+ */
+class SolutionSet {
+
+    private final List<Location> squares;
+    private final List<byte[]> solutions = new ArrayList<>();
+
+    // FNV-1a over the solutions, kept as they are added so lookups don't have to walk them
+    private long hash = 0xcbf29ce484222325L;
+
+    SolutionSet(List<Location> squares) {
+        this.squares = Collections.unmodifiableList(new ArrayList<>(squares));
+    }
+
+    void add(byte[] solution) {
+        solutions.add(solution);
+        for (byte b: solution) {
+            hash = (hash ^ b) * 0x100000001b3L;
+        }
+    }
+
+    List<Location> getSquares() {
+        return squares;
+    }
+
+    List<byte[]> getSolutions() {
+        return solutions;
+    }
+
+    int size() {
+        return solutions.size();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof SolutionSet)) {
+            return false;
+        }
+        SolutionSet other = (SolutionSet) obj;
+        if (this.hash != other.hash || this.solutions.size() != other.solutions.size() || !this.squares.equals(other.squares)) {
+            return false;
+        }
+        for (int i=0; i < solutions.size(); i++) {
+            if (!Arrays.equals(this.solutions.get(i), other.solutions.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
+    }
+}
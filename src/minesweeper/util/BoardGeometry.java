@@ -0,0 +1,193 @@
+package minesweeper.util;
+
+import minesweeper.settings.GameSettings;
+import minesweeper.structure.Location;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The fixed layout of a board of a given size: cell indices, neighbours, interned locations and symmetries.
+ * These only depend on the width and height, so one instance is built per size and shared by every game,
+ * solver and worker which uses it. Instances are immutable, the arrays handed out must not be modified.
+ *
+ * Cells are indexed by x * height + y, which is the order the board is scanned in.
+ *
+ * Symmetry i maps a cell to (flip(x), flip(y)) with the columns flipped if bit 1 is set and the rows flipped
+ * if bit 2 is set, and then swaps x and y if bit 4 is set. Only square boards have the 4 symmetries which swap.
+ */
+public final class BoardGeometry {
+
+    private final static Map<Long, BoardGeometry> geometries = new ConcurrentHashMap<>();
+
+    private final int width;
+    private final int height;
+    private final Location[] locations;
+    private final int[][] neighbours;
+    private final int[][] symmetries;
+    private final int[][] inverses;
+    private final int[][] compositions;
+    private final int[] inverseSymmetry;
+    private final double[] distanceFromEdge;
+
+    public static BoardGeometry of(GameSettings settings) {
+        return of(settings.width, settings.height);
+    }
+
+    public static BoardGeometry of(int width, int height) {
+        return geometries.computeIfAbsent(((long) width << 32) | height, key -> new BoardGeometry(width, height));
+    }
+
+    private BoardGeometry(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        int cells = width * height;
+        this.locations = new Location[cells];
+        this.neighbours = new int[cells][];
+        this.distanceFromEdge = new double[cells];
+        for (int x=0; x < width; x++) {
+            for (int y=0; y < height; y++) {
+                int index = index(x, y);
+                locations[index] = new Location(x, y);
+
+                int[] adjacent = new int[8];
+                int count = 0;
+                for (int i = Math.max(0, x - 1); i <= Math.min(width - 1, x + 1); i++) {
+                    for (int j = Math.max(0, y - 1); j <= Math.min(height - 1, y + 1); j++) {
+                        if (i != x || j != y) {
+                            adjacent[count++] = index(i, j);
+                        }
+                    }
+                }
+                neighbours[index] = Arrays.copyOf(adjacent, count);
+
+                // the nearest edge counts, the other one is only a small tie break
+                int rows = Math.min(height - 1 - y, y);
+                int cols = Math.min(width - 1 - x, x);
+                distanceFromEdge[index] = Math.min(rows, cols) + 0.0001 * Math.max(rows, cols);
+            }
+        }
+
+        int count = (width == height) ? 8 : 4;
+        this.symmetries = new int[count][cells];
+        this.inverses = new int[count][cells];
+        for (int symmetry=0; symmetry < count; symmetry++) {
+            for (int x=0; x < width; x++) {
+                for (int y=0; y < height; y++) {
+                    int targetX = (symmetry & 1) != 0 ? width - 1 - x : x;
+                    int targetY = (symmetry & 2) != 0 ? height - 1 - y : y;
+                    if ((symmetry & 4) != 0) {
+                        int temp = targetX;
+                        targetX = targetY;
+                        targetY = temp;
+                    }
+                    symmetries[symmetry][index(x, y)] = index(targetX, targetY);
+                    inverses[symmetry][index(targetX, targetY)] = index(x, y);
+                }
+            }
+        }
+
+        // the symmetries form a group, so applying one after another is always one of them
+        this.compositions = new int[count][count];
+        this.inverseSymmetry = new int[count];
+        int[] composed = new int[cells];
+        for (int a=0; a < count; a++) {
+            for (int b=0; b < count; b++) {
+                for (int index=0; index < cells; index++) {
+                    composed[index] = symmetries[a][symmetries[b][index]];
+                }
+                for (int c=0; c < count; c++) {
+                    if (Arrays.equals(composed, symmetries[c])) {
+                        compositions[a][b] = c;
+                        if (c == 0) {
+                            inverseSymmetry[a] = b;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getCells() {
+        return locations.length;
+    }
+
+    public int index(int x, int y) {
+        return x * height + y;
+    }
+
+    public int index(Location location) {
+        return location.x * height + location.y;
+    }
+
+    /**
+     * @return the shared location for the cell, so callers don't have to allocate one
+     */
+    public Location getLocation(int index) {
+        return locations[index];
+    }
+
+    public Location getLocation(int x, int y) {
+        return locations[index(x, y)];
+    }
+
+    /**
+     * @return the indices of the cells next to this one, in board order
+     */
+    public int[] getNeighbours(int index) {
+        return neighbours[index];
+    }
+
+    /**
+     * @return how far the cell is from the nearest edge, see {@link minesweeper.solver.HumanlySolver}
+     */
+    public double getDistanceFromEdge(int index) {
+        return distanceFromEdge[index];
+    }
+
+    /**
+     * @return 8 for a square board, otherwise 4
+     */
+    public int getSymmetryCount() {
+        return symmetries.length;
+    }
+
+    /**
+     * @return the table mapping each cell to where the symmetry takes it
+     */
+    public int[] getSymmetry(int symmetry) {
+        return symmetries[symmetry];
+    }
+
+    /**
+     * @return the table mapping each cell back to where the symmetry took it from
+     */
+    public int[] getInverse(int symmetry) {
+        return inverses[symmetry];
+    }
+
+    /**
+     * @return the symmetry which does the same as applying symmetry first and then symmetry second
+     */
+    public int compose(int second, int first) {
+        return compositions[second][first];
+    }
+
+    /**
+     * @return the symmetry which undoes this one
+     */
+    public int invert(int symmetry) {
+        return inverseSymmetry[symmetry];
+    }
+}
@@ -0,0 +1,67 @@
+package minesweeper.util;
+
+import minesweeper.gamestate.GameStateModel;
+import minesweeper.structure.Location;
+
+/**
+ * A copy of what the player can see of a board, one value per cell in {@link BoardGeometry} index order.
+ * Values are as returned by {@link GameStateModel#query(Location)}: 0-8 for a revealed tile,
+ * otherwise one of the negative GameStateModel constants, so they all fit in a byte.
+ *
+ * Taking the copy costs one query per cell using the geometry's shared locations, after that
+ * reading a cell is an array lookup.
+ */
+public final class BoardSnapshot {
+
+    private final BoardGeometry geometry;
+    private final byte[] cells;
+
+    public BoardSnapshot(GameStateModel model) {
+        this.geometry = BoardGeometry.of(model.getWidth(), model.getHeight());
+        this.cells = new byte[geometry.getCells()];
+        copy(model, cells);
+    }
+
+    /**
+     * Copy the visible board into the array, which must have at least one entry per cell
+     */
+    public static void copy(GameStateModel model, byte[] cells) {
+        BoardGeometry geometry = BoardGeometry.of(model.getWidth(), model.getHeight());
+        for (int index=0; index < geometry.getCells(); index++) {
+            cells[index] = (byte) model.query(geometry.getLocation(index));
+        }
+    }
+
+    /**
+     * Copy the visible board into the array, which must have at least one entry per cell
+     */
+    public static void copy(GameStateModel model, int[] cells) {
+        BoardGeometry geometry = BoardGeometry.of(model.getWidth(), model.getHeight());
+        for (int index=0; index < geometry.getCells(); index++) {
+            cells[index] = model.query(geometry.getLocation(index));
+        }
+    }
+
+    /**
+     * Bring the copy up to date with the board it was taken from
+     */
+    public void refresh(GameStateModel model) {
+        copy(model, cells);
+    }
+
+    public int query(int cell) {
+        return cells[cell];
+    }
+
+    public int query(Location location) {
+        return cells[geometry.index(location)];
+    }
+
+    public boolean isRevealed(int cell) {
+        return cells[cell] >= 0 && cells[cell] <= 8;
+    }
+
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+}
@@ -0,0 +1,183 @@
+package minesweeper.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Counts the most frequent keys of a stream in a fixed number of counters, using the Space-Saving algorithm
+ * (Metwally, Agrawal and El Abbadi).
+ *
+ * When a key which isn't being counted arrives and all the counters are in use, the key with the lowest count is
+ * dropped and the new key takes over its counter, inheriting its count as an error. This gives the bounds
+ * <ul>
+ * <li>a key's count is never less than its true frequency, and at most its error more</li>
+ * <li>the error is never more than total / capacity, so every key seen more often than that is being counted</li>
+ * </ul>
+ *
+ * Each counted key carries a value, created when the key takes a counter and dropped with it.
+ * Not thread safe.
+ */
+public class HeavyHitters<K, V> {
+
+    public static class Entry<K, V> {
+        private final K key;
+        private final V value;
+        private long count;
+        private final long error;
+
+        private Entry(K key, V value, long count, long error) {
+            this.key = key;
+            this.value = value;
+            this.count = count;
+            this.error = error;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        /**
+         * @return the estimated frequency, never less than the true frequency
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return how much the count can be more than the true frequency
+         */
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * @return the frequency the key is certain to have
+         */
+        public long getGuaranteed() {
+            return count - error;
+        }
+    }
+
+    private final int capacity;
+
+    // a min heap on count, with the position of each key in it
+    private final List<Entry<K, V>> heap;
+    private final Map<K, Integer> positions = new HashMap<>();
+    private long total = 0;
+
+    public HeavyHitters(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.heap = new ArrayList<>(capacity);
+    }
+
+    /**
+     * Count one occurrence of the key
+     * @param admit creates the value for the key if it isn't being counted
+     * @return the key's value
+     */
+    public V offer(K key, Function<K, V> admit) {
+
+        total++;
+
+        Integer position = positions.get(key);
+        if (position != null) {
+            Entry<K, V> entry = heap.get(position);
+            entry.count++;
+            siftDown(position);
+            return entry.value;
+        }
+
+        Entry<K, V> entry;
+        if (heap.size() < capacity) {
+            entry = new Entry<>(key, admit.apply(key), 1, 0);
+            heap.add(entry);
+            positions.put(key, heap.size() - 1);
+            siftUp(heap.size() - 1);
+        } else {
+            // take over the counter with the lowest count
+            Entry<K, V> evicted = heap.get(0);
+            positions.remove(evicted.key);
+            entry = new Entry<>(key, admit.apply(key), evicted.count + 1, evicted.count);
+            heap.set(0, entry);
+            positions.put(key, 0);
+            siftDown(0);
+        }
+        return entry.value;
+    }
+
+    /**
+     * @return the number of occurrences offered
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the largest error any count can have, so every key more frequent than this is being counted
+     */
+    public long getMaxError() {
+        return heap.size() < capacity ? 0 : heap.get(0).count;
+    }
+
+    /**
+     * @return the counted keys, most frequent first
+     */
+    public List<Entry<K, V>> getEntries() {
+        List<Entry<K, V>> result = new ArrayList<>(heap);
+        result.sort(Comparator.comparingLong((Entry<K, V> entry) -> entry.count).reversed());
+        return result;
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (heap.get(parent).count <= heap.get(position).count) {
+                break;
+            }
+            swap(parent, position);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < heap.size() && heap.get(left).count < heap.get(smallest).count) {
+                smallest = left;
+            }
+            if (right < heap.size() && heap.get(right).count < heap.get(smallest).count) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                break;
+            }
+            swap(smallest, position);
+            position = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        Entry<K, V> temp = heap.get(i);
+        heap.set(i, heap.get(j));
+        heap.set(j, temp);
+        positions.put(heap.get(i).key, i);
+        positions.put(heap.get(j).key, j);
+    }
+}
@@ -0,0 +1,58 @@
+package minesweeper.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A uniform random sample of a fixed number of items from a stream of unknown length (Vitter's algorithm R).
+ * Every item offered so far is in the sample with the same chance, capacity / seen.
+ *
+ * Not thread safe.
+ */
+public class Reservoir<T> {
+
+    private final List<T> items;
+    private final int capacity;
+    private long seen = 0;
+
+    public Reservoir(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.items = new ArrayList<>(capacity);
+    }
+
+    public void offer(T item, Random random) {
+        seen++;
+        if (items.size() < capacity) {
+            items.add(item);
+        } else {
+            // keep the new item with chance capacity / seen, in place of a random one of the sample
+            long slot = (long) (random.nextDouble() * seen);
+            if (slot < capacity) {
+                items.set((int) slot, item);
+            }
+        }
+    }
+
+    /**
+     * @return the items in the sample, in no particular order
+     */
+    public List<T> getItems() {
+        return Collections.unmodifiableList(items);
+    }
+
+    /**
+     * @return the number of items offered
+     */
+    public long getSeen() {
+        return seen;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,151 @@
+package minesweeper.util;
+
+import minesweeper.gamestate.GameStateModel;
+import minesweeper.structure.Location;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A 64 bit hash of the revealed tiles of a board, kept up to date as moves are played rather than rescanning the board.
+ *
+ * There is one hash per symmetry of the board, hash s being that of the board seen through symmetry s (the view
+ * {@link minesweeper.analysis.gamestate.GameStateFuzzy} compares, cell p of the view is cell s(p) of the board).
+ * Boards which are the same up to a symmetry have the same set of hashes, so the smallest one is used as the key,
+ * and the symmetry giving it relates the board to any other board with the same key.
+ *
+ * Only revealed tiles contribute, flags and hidden tiles look the same. The hash doesn't include the mine count,
+ * so keys should only be compared between games with the same settings.
+ */
+public final class ZobristHash {
+
+    private final static int VALUES = 9;
+    private final static long TABLE_SEED = 0x5DEECE66DL;
+
+    // one random number per cell and value, the same for every board of a size so keys can be compared between games
+    private final static Map<BoardGeometry, long[]> tables = new ConcurrentHashMap<>();
+
+    private final BoardGeometry geometry;
+    private final long[] table;
+    private final long[] hashes;
+    private final boolean[] revealed;
+    private int revealedCount = 0;
+
+    public ZobristHash(BoardGeometry geometry) {
+        this.geometry = geometry;
+        this.table = tables.computeIfAbsent(geometry, g -> {
+            Random random = new Random(TABLE_SEED ^ ((long) g.getWidth() << 32 | g.getHeight()));
+            long[] result = new long[g.getCells() * VALUES];
+            for (int i=0; i < result.length; i++) {
+                result[i] = random.nextLong();
+            }
+            return result;
+        });
+        this.hashes = new long[geometry.getSymmetryCount()];
+        this.revealed = new boolean[geometry.getCells()];
+    }
+
+    /**
+     * Record a tile being revealed
+     * @param value 0-8
+     */
+    public void reveal(int cell, int value) {
+        if (revealed[cell]) {
+            return;
+        }
+        revealed[cell] = true;
+        revealedCount++;
+        for (int symmetry=0; symmetry < hashes.length; symmetry++) {
+            hashes[symmetry] ^= table[geometry.getInverse(symmetry)[cell] * VALUES + value];
+        }
+    }
+
+    /**
+     * Bring the hash up to date after the moves have been played, looking only at the tiles they could have revealed.
+     * If that doesn't account for everything revealed on the board the hash is rebuilt from the whole board.
+     */
+    public void update(GameStateModel model, Iterable<? extends Location> played) {
+
+        Deque<Integer> work = new ArrayDeque<>();
+        for (Location move: played) {
+            // chords reveal the neighbours, so check them as well
+            int index = geometry.index(move);
+            work.add(index);
+            for (int neighbour: geometry.getNeighbours(index)) {
+                work.add(neighbour);
+            }
+        }
+
+        while (!work.isEmpty()) {
+            int index = work.poll();
+            if (revealed[index]) {
+                continue;
+            }
+            int value = model.query(geometry.getLocation(index));
+            if (value >= 0 && value <= 8) {
+                reveal(index, value);
+                // a zero opens all its neighbours
+                if (value == 0) {
+                    for (int neighbour: geometry.getNeighbours(index)) {
+                        work.add(neighbour);
+                    }
+                }
+            }
+        }
+
+        if (geometry.getCells() - revealedCount != model.getHidden()) {
+            rebuild(model);
+        }
+    }
+
+    /**
+     * Rebuild the hash from a scan of the whole board
+     */
+    public void rebuild(GameStateModel model) {
+        BoardSnapshot snapshot = new BoardSnapshot(model);
+        Arrays.fill(hashes, 0);
+        Arrays.fill(revealed, false);
+        revealedCount = 0;
+
+        for (int index=0; index < revealed.length; index++) {
+            if (snapshot.isRevealed(index)) {
+                reveal(index, snapshot.query(index));
+            }
+        }
+    }
+
+    /**
+     * @return the hash of the board seen through the symmetry
+     */
+    public long getHash(int symmetry) {
+        return hashes[symmetry];
+    }
+
+    /**
+     * @return the same key for every board which is the same as this one up to a symmetry
+     */
+    public long getKey() {
+        return hashes[getKeySymmetry()];
+    }
+
+    /**
+     * @return the symmetry whose view of the board gives the key
+     */
+    public int getKeySymmetry() {
+        int best = 0;
+        for (int symmetry=1; symmetry < hashes.length; symmetry++) {
+            if (hashes[symmetry] < hashes[best]) {
+                best = symmetry;
+            }
+        }
+        return best;
+    }
+
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+}